@@ -0,0 +1,132 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.utils.sign;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.saml.WSSSAMLKeyInfoProcessor;
+import org.opensaml.saml.security.impl.SAMLSignatureProfileValidator;
+import org.opensaml.security.x509.BasicX509Credential;
+import org.opensaml.xmlsec.signature.KeyInfo;
+import org.opensaml.xmlsec.signature.Signature;
+import org.opensaml.xmlsec.signature.support.SignatureValidationProvider;
+import org.opensaml.xmlsec.signature.support.provider.ApacheSantuarioSignatureValidationProviderImpl;
+
+/**
+ * Thread safe XML signature validation for a service provider. Everything that doesn't depend on
+ * the signature being validated is resolved once and shared.
+ *
+ * <p>{@link org.opensaml.xmlsec.signature.support.SignatureValidator} looks its provider up through
+ * the thread context classloader, which is why validation used to swap that classloader around
+ * every call. The Santuario provider is created directly here instead, so validation can run on
+ * any thread without touching the context classloader.
+ */
+public class SignatureValidationService {
+
+  static {
+    OpenSAMLUtil.initSamlEngine();
+  }
+
+  private static final ConcurrentMap<String, SignatureValidationService> SERVICES =
+      new ConcurrentHashMap<>();
+
+  private static final SignatureValidationProvider PROVIDER =
+      new ApacheSantuarioSignatureValidationProviderImpl();
+
+  private static final SAMLSignatureProfileValidator PROFILE_VALIDATOR =
+      new SAMLSignatureProfileValidator();
+
+  private final Crypto signatureCrypto;
+
+  private final WSSConfig wssConfig = WSSConfig.getNewInstance();
+
+  private SignatureValidationService(String hostname) throws IOException {
+    signatureCrypto = new SystemCrypto(hostname).getSignatureCrypto();
+  }
+
+  /**
+   * @param hostname - hostname of the service provider whose trust store is used
+   * @return the validation service for the service provider
+   */
+  public static SignatureValidationService forHostname(String hostname) throws IOException {
+    SignatureValidationService service = SERVICES.get(hostname);
+    if (service == null) {
+      SignatureValidationService created = new SignatureValidationService(hostname);
+      service = SERVICES.putIfAbsent(hostname, created);
+      if (service == null) {
+        service = created;
+      }
+    }
+    return service;
+  }
+
+  /*
+   DDF Differences:
+     - No longer take a Document object for the WSSConfig. Instead a blank config is shared.
+     - No longer validate the trust of the certificate that was used to do the signature.
+  */
+  public void validate(Signature signature) throws SimpleSign.SignatureException {
+    SAMLKeyInfo samlKeyInfo = null;
+
+    KeyInfo keyInfo = signature.getKeyInfo();
+    if (keyInfo != null) {
+      // RequestData is mutable and not thread safe, so every validation gets its own
+      RequestData requestData = new RequestData();
+      requestData.setSigVerCrypto(signatureCrypto);
+      requestData.setWssConfig(wssConfig);
+      WSSSAMLKeyInfoProcessor keyInfoProcessor = new WSSSAMLKeyInfoProcessor(requestData);
+      try {
+        samlKeyInfo =
+            SAMLUtil.getCredentialFromKeyInfo(keyInfo.getDOM(), keyInfoProcessor, signatureCrypto);
+      } catch (WSSecurityException e) {
+        throw new SimpleSign.SignatureException("Unable to get KeyInfo.", e);
+      }
+    }
+    if (samlKeyInfo == null) {
+      throw new SimpleSign.SignatureException("No KeyInfo supplied in the signature");
+    }
+
+    validateSignatureAndSamlKey(signature, samlKeyInfo);
+  }
+
+  private void validateSignatureAndSamlKey(Signature signature, SAMLKeyInfo samlKeyInfo)
+      throws SimpleSign.SignatureException {
+    try {
+      PROFILE_VALIDATOR.validate(signature);
+    } catch (org.opensaml.xmlsec.signature.support.SignatureException e) {
+      throw new SimpleSign.SignatureException(e);
+    }
+
+    BasicX509Credential credential;
+    if (samlKeyInfo.getCerts() != null) {
+      credential = new BasicX509Credential(samlKeyInfo.getCerts()[0]);
+    } else {
+      throw new SimpleSign.SignatureException(
+          "Can't get X509Certificate or PublicKey to verify signature.");
+    }
+
+    SignatureVerificationCache.getInstance()
+        .verify(
+            signature,
+            credential.getEntityCertificate(),
+            () -> {
+              try {
+                PROVIDER.validate(signature, credential);
+              } catch (org.opensaml.xmlsec.signature.support.SignatureException e) {
+                throw new SimpleSign.SignatureException("Error validating the XML signature", e);
+              }
+            });
+  }
+}
@@ -0,0 +1,125 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.utils.sign;
+
+import static org.codice.compliance.CommonKt.SIGNATURE_CACHE_SIZE;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import org.apache.xml.security.c14n.CanonicalizationException;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.xmlsec.signature.Signature;
+import org.w3c.dom.Element;
+
+/**
+ * Remembers successful XML signature verifications so the same signed bytes, signed by the same
+ * certificate, are only verified once. Entries are keyed by a SHA-256 digest of the exclusive
+ * canonical form of the signed element, which includes its enveloped signature, and the encoded
+ * certificate. Failures are never remembered.
+ *
+ * <p>This is meant for replay, corpus and load runs where identical assertions arrive many times.
+ * It is off unless the {@value org.codice.compliance.CommonKt#SIGNATURE_CACHE_SIZE} system property
+ * is set to a positive size, so conformance runs verify every signature.
+ */
+public class SignatureVerificationCache {
+
+  private static final SignatureVerificationCache INSTANCE =
+      new SignatureVerificationCache(Long.getLong(SIGNATURE_CACHE_SIZE, 0L));
+
+  private final Cache<HashCode, Boolean> verified;
+
+  SignatureVerificationCache(long maximumSize) {
+    verified =
+        maximumSize > 0
+            ? CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build()
+            : null;
+  }
+
+  public static SignatureVerificationCache getInstance() {
+    return INSTANCE;
+  }
+
+  /** A signature verification that throws if the signature is invalid. */
+  @FunctionalInterface
+  public interface Verification {
+    void verify() throws SimpleSign.SignatureException;
+  }
+
+  public boolean isEnabled() {
+    return verified != null;
+  }
+
+  /**
+   * Runs {@code verification} unless the same signed element was already verified successfully
+   * with the same certificate.
+   *
+   * @param signature - the signature being verified
+   * @param certificate - the certificate the signature is verified with
+   * @param verification - the actual verification
+   * @throws SimpleSign.SignatureException if the verification fails
+   */
+  public void verify(
+      Signature signature, X509Certificate certificate, Verification verification)
+      throws SimpleSign.SignatureException {
+    HashCode key = isEnabled() ? key(signature, certificate) : null;
+    if (key == null) {
+      verification.verify();
+      return;
+    }
+
+    if (verified.getIfPresent(key) == null) {
+      verification.verify();
+      verified.put(key, Boolean.TRUE);
+    }
+  }
+
+  public long hitCount() {
+    return isEnabled() ? verified.stats().hitCount() : 0;
+  }
+
+  public long missCount() {
+    return isEnabled() ? verified.stats().missCount() : 0;
+  }
+
+  /** Forgets every remembered verification. */
+  public void invalidateAll() {
+    if (isEnabled()) {
+      verified.invalidateAll();
+    }
+  }
+
+  /** @return the cache key or null if the signed element's bytes aren't available */
+  private static HashCode key(Signature signature, X509Certificate certificate)
+      throws SimpleSign.SignatureException {
+    XMLObject signedObject = signature.getParent();
+    Element signedElement = signedObject == null ? null : signedObject.getDOM();
+    if (signedElement == null) {
+      return null;
+    }
+
+    try {
+      byte[] canonicalBytes =
+          Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS)
+              .canonicalizeSubtree(signedElement);
+      return Hashing.sha256()
+          .newHasher()
+          .putBytes(canonicalBytes)
+          .putBytes(certificate.getEncoded())
+          .hash();
+    } catch (InvalidCanonicalizerException
+        | CanonicalizationException
+        | CertificateEncodingException e) {
+      throw new SimpleSign.SignatureException(e);
+    }
+  }
+}
@@ -11,8 +11,6 @@
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -30,24 +28,17 @@
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
-import org.apache.wss4j.common.saml.SAMLKeyInfo;
-import org.apache.wss4j.common.saml.SAMLUtil;
-import org.apache.wss4j.dom.engine.WSSConfig;
-import org.apache.wss4j.dom.handler.RequestData;
-import org.apache.wss4j.dom.saml.WSSSAMLKeyInfoProcessor;
 import org.apache.xml.security.algorithms.JCEMapper;
+import org.codice.security.sign.RedirectQueryString;
 import org.opensaml.saml.common.SAMLObjectContentReference;
 import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Response;
-import org.opensaml.saml.security.impl.SAMLSignatureProfileValidator;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.xmlsec.keyinfo.impl.X509KeyInfoGeneratorFactory;
 import org.opensaml.xmlsec.signature.KeyInfo;
 import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.support.SignatureConstants;
-import org.opensaml.xmlsec.signature.support.SignatureValidator;
-import org.opensaml.xmlsec.signature.support.provider.ApacheSantuarioSignatureValidationProviderImpl;
 
 // NOTE: "DDF Difference" means something that is different in the DDF version of this class.
 // DDF Difference: The {@code resignAssertion} and {@code forceSignSamlObject} methods were removed
@@ -65,6 +56,8 @@ public class SimpleSign {
 
   private final SystemCrypto crypto;
 
+  private final String hostname;
+
   // DDF Difference: Uses SHA1 for the hashing mechanism when signing by default instead of SHA256.
   public SimpleSign() throws IOException {
     this(WSS4JConstants.DSA);
@@ -72,7 +65,19 @@ public SimpleSign() throws IOException {
 
   // DDF Difference: The signing algorithm is not configurable in DDF.
   public SimpleSign(String dsaAlgoUri) throws IOException {
-    crypto = new SystemCrypto(getCurrentSPHostname());
+    this(dsaAlgoUri, getCurrentSPHostname());
+  }
+
+  /**
+   * Creates a signer for the given service provider instead of the current one. Used by code that
+   * signs on behalf of a service provider outside of the test thread.
+   *
+   * @param dsaAlgoUri - signature algorithm to use for DSA keys
+   * @param hostname - hostname of the service provider whose keys are used
+   */
+  public SimpleSign(String dsaAlgoUri, String hostname) throws IOException {
+    crypto = new SystemCrypto(hostname);
+    this.hostname = hostname;
 
     this.rsaAlgoUri = WSS4JConstants.RSA;
     rsaAlgoJce = JCEMapper.translateURItoJCEID(rsaAlgoUri);
@@ -115,36 +120,26 @@ public Map<String, String> signUriString(
       PrivateKey privateKey = getSignaturePrivateKey();
       java.security.Signature signature = getSignature(certificates[0], privateKey);
 
-      // Construct query parameters
-      StringBuilder requestToSign =
-          new StringBuilder(samlType).append("=").append(samlRequestOrResponse);
-      if (relayState != null) {
-        requestToSign
-            .append(String.format("&%s=", SSOConstants.RELAY_STATE))
-            .append(URLEncoder.encode(relayState, StandardCharsets.UTF_8.name()));
-      }
-      requestToSign
-          .append(String.format("&%s=", SSOConstants.SIG_ALG))
-          .append(URLEncoder.encode(sigAlgo, StandardCharsets.UTF_8.name()));
+      String encodedRelayState = relayState == null ? null : RedirectQueryString.encode(relayState);
+      String encodedSigAlg = RedirectQueryString.encode(sigAlgo);
 
       // Sign uri
-      signature.update(requestToSign.toString().getBytes(StandardCharsets.UTF_8.name()));
+      signature.update(
+          RedirectQueryString.signedOctets(
+              samlType, samlRequestOrResponse, encodedRelayState, encodedSigAlg));
       byte[] signatureBytes = signature.sign();
 
       Map<String, String> queryParams = new HashMap<>();
       queryParams.put(samlType, samlRequestOrResponse);
-      if (relayState != null) {
-        queryParams.put(
-            SSOConstants.RELAY_STATE, URLEncoder.encode(relayState, StandardCharsets.UTF_8.name()));
+      if (encodedRelayState != null) {
+        queryParams.put(SSOConstants.RELAY_STATE, encodedRelayState);
       }
-      queryParams.put(
-          SSOConstants.SIG_ALG, URLEncoder.encode(sigAlgo, StandardCharsets.UTF_8.name()));
+      queryParams.put(SSOConstants.SIG_ALG, encodedSigAlg);
       queryParams.put(
           SSOConstants.SIGNATURE,
-          URLEncoder.encode(
-              Base64.getEncoder().encodeToString(signatureBytes), StandardCharsets.UTF_8.name()));
+          RedirectQueryString.encode(Base64.getEncoder().encodeToString(signatureBytes)));
       return queryParams;
-    } catch (java.security.SignatureException | UnsupportedEncodingException e) {
+    } catch (java.security.SignatureException e) {
       throw new SignatureException(e);
     }
   }
@@ -220,18 +215,15 @@ public boolean validateSignature(
     }
 
     try {
-      StringBuilder queryParams =
-          new StringBuilder(samlType).append("=").append(encodedRequestOrResponse);
-      if (relayState != null) {
-        queryParams.append(String.format("&%s=", SSOConstants.RELAY_STATE)).append(relayState);
-      }
-      queryParams.append(String.format("&%s=", SSOConstants.SIG_ALG)).append(encodedSigAlg);
+      byte[] signedOctets =
+          RedirectQueryString.signedOctets(
+              samlType, encodedRequestOrResponse, relayState, encodedSigAlg);
       certificateString =
           String.format(
               "%s%n%s%n%s",
               "-----BEGIN CERTIFICATE-----", certificateString, "-----END CERTIFICATE-----");
-      String sigAlg = URLDecoder.decode(encodedSigAlg, StandardCharsets.UTF_8.name());
-      String signature = URLDecoder.decode(encodedSignature, StandardCharsets.UTF_8.name());
+      String sigAlg = RedirectQueryString.decode(encodedSigAlg);
+      String signature = RedirectQueryString.decode(encodedSignature);
 
       CertificateFactory certificateFactory = CertificateFactory.getInstance("X509");
       Certificate certificate = getCertificate(certificateString, certificateFactory);
@@ -244,7 +236,7 @@ public boolean validateSignature(
 
       java.security.Signature sig = java.security.Signature.getInstance(jceSigAlg);
       sig.initVerify(certificate.getPublicKey());
-      sig.update(queryParams.toString().getBytes(StandardCharsets.UTF_8.name()));
+      sig.update(signedOctets);
 
       byte[] decodedSignature = Base64.getDecoder().decode(signature);
       if (new String(decodedSignature, StandardCharsets.UTF_8.name())
@@ -263,68 +255,17 @@ public boolean validateSignature(
     }
   }
 
-  /*
-   DDF Differences:
-     - No longer take a Document object for the WSSConfig. Instead a new blank config is created.
-     - No longer validate the trust of the certificate that was used to do the signature.
-  */
+  /**
+   * Validates an XML signature against this service provider's trust store. The work is done by
+   * the thread safe {@link SignatureValidationService} shared by all signers of the service
+   * provider.
+   */
   public void validateSignature(Signature signature) throws SignatureException {
-    RequestData requestData = new RequestData();
-    requestData.setSigVerCrypto(crypto.getSignatureCrypto());
-    WSSConfig wssConfig = WSSConfig.getNewInstance();
-    requestData.setWssConfig(wssConfig);
-
-    SAMLKeyInfo samlKeyInfo = null;
-
-    KeyInfo keyInfo = signature.getKeyInfo();
-    if (keyInfo != null) {
-      try {
-        samlKeyInfo =
-            SAMLUtil.getCredentialFromKeyInfo(
-                keyInfo.getDOM(),
-                new WSSSAMLKeyInfoProcessor(requestData),
-                crypto.getSignatureCrypto());
-      } catch (WSSecurityException e) {
-        throw new SignatureException("Unable to get KeyInfo.", e);
-      }
-    }
-    if (samlKeyInfo == null) {
-      throw new SignatureException("No KeyInfo supplied in the signature");
-    }
-
-    validateSignatureAndSamlKey(signature, samlKeyInfo);
-  }
-
-  private void validateSignatureAndSamlKey(Signature signature, SAMLKeyInfo samlKeyInfo)
-      throws SignatureException {
-    SAMLSignatureProfileValidator validator = new SAMLSignatureProfileValidator();
     try {
-      validator.validate(signature);
-    } catch (org.opensaml.xmlsec.signature.support.SignatureException e) {
+      SignatureValidationService.forHostname(hostname).validate(signature);
+    } catch (IOException e) {
       throw new SignatureException(e);
     }
-
-    BasicX509Credential credential;
-    if (samlKeyInfo.getCerts() != null) {
-      credential = new BasicX509Credential(samlKeyInfo.getCerts()[0]);
-    } else {
-      throw new SignatureException("Can't get X509Certificate or PublicKey to verify signature.");
-    }
-
-    ClassLoader threadLoader = null;
-    try {
-      threadLoader = Thread.currentThread().getContextClassLoader();
-      Thread.currentThread()
-          .setContextClassLoader(
-              ApacheSantuarioSignatureValidationProviderImpl.class.getClassLoader());
-      SignatureValidator.validate(signature, credential);
-    } catch (org.opensaml.xmlsec.signature.support.SignatureException e) {
-      throw new SignatureException("Error validating the XML signature", e);
-    } finally {
-      if (threadLoader != null) {
-        Thread.currentThread().setContextClassLoader(threadLoader);
-      }
-    }
   }
 
   /** Private Getters */
@@ -0,0 +1,141 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.corpus
+
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.InputStream
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.zip.GZIPInputStream
+import java.util.zip.ZipInputStream
+
+/**
+ * A captured message, named after the file or archive entry it was read from.
+ */
+class CorpusMessage(val name: String, val content: ByteArray)
+
+/**
+ * Reads the messages of a corpus, which is a directory, a zip file or a tar file (optionally
+ * gzipped) of captured messages. Archives are read as a stream, so a corpus doesn't have to fit
+ * in memory or be unpacked first. Hidden files are skipped.
+ */
+object CorpusReader {
+
+    /**
+     * Calls {@param action} for every message of {@param corpus}, in the order they're read.
+     */
+    fun read(corpus: File, action: (CorpusMessage) -> Unit) {
+        require(corpus.exists()) { "The corpus ${corpus.path} does not exist." }
+
+        val name = corpus.name.toLowerCase()
+        when {
+            corpus.isDirectory -> corpus.walkTopDown()
+                    .onEnter { it == corpus || !it.isHidden }
+                    .filter { it.isFile && !it.isHidden }
+                    .forEach { action(CorpusMessage(it.path, it.readBytes())) }
+            name.endsWith(".zip") -> readZip(corpus.inputStream(), action)
+            name.endsWith(".tar") -> readTar(corpus.inputStream(), action)
+            name.endsWith(".tar.gz") || name.endsWith(".tgz") ->
+                readTar(GZIPInputStream(corpus.inputStream()), action)
+            else -> action(CorpusMessage(corpus.path, corpus.readBytes()))
+        }
+    }
+
+    private fun isHidden(entryName: String): Boolean {
+        return entryName.split('/').any { it.startsWith(".") && it != "." && it != ".." }
+    }
+
+    private fun readZip(input: InputStream, action: (CorpusMessage) -> Unit) {
+        ZipInputStream(input.buffered()).use { zip ->
+            generateSequence { zip.nextEntry }
+                    .filter { !it.isDirectory && !isHidden(it.name) }
+                    .forEach { action(CorpusMessage(it.name, zip.readBytes())) }
+        }
+    }
+
+    private fun readTar(input: InputStream, action: (CorpusMessage) -> Unit) {
+        input.buffered().use {
+            val tar = TarReader(it)
+            generateSequence { tar.nextFile() }
+                    .filter { !isHidden(it.name) }
+                    .forEach(action)
+        }
+    }
+
+    /**
+     * Reads the regular files of a ustar, pax or GNU tar stream. Only the long names of the pax and
+     * GNU extensions are read, their other headers are skipped.
+     */
+    @Suppress("MagicNumber")
+    private class TarReader(input: InputStream) {
+        companion object {
+            private const val BLOCK_SIZE = 512
+            private const val REGULAR_FILE = '0'
+            private const val OLD_REGULAR_FILE = '\u0000'
+            private const val GNU_LONG_NAME = 'L'
+            private const val PAX_HEADER = 'x'
+            private val PAX_PATH = """\d+ path=(.*)\n""".toRegex()
+        }
+
+        private val input = DataInputStream(input)
+        private val header = ByteArray(BLOCK_SIZE)
+
+        /** @return the next regular file, or null at the end of the archive */
+        fun nextFile(): CorpusMessage? {
+            var longName: String? = null
+            while (readHeader()) {
+                val content = readContent(octal(124, 12))
+                when (header[156].toChar()) {
+                    REGULAR_FILE, OLD_REGULAR_FILE ->
+                        return CorpusMessage(longName ?: headerName(), content)
+                    GNU_LONG_NAME -> longName = String(content, UTF_8).trimEnd('\u0000')
+                    PAX_HEADER -> longName =
+                            PAX_PATH.find(String(content, UTF_8))?.groupValues?.get(1)
+                    else -> longName = null
+                }
+            }
+            return null
+        }
+
+        /** @return false if the end of the archive was reached */
+        private fun readHeader(): Boolean {
+            try {
+                input.readFully(header)
+            } catch (e: EOFException) {
+                return false
+            }
+            return header.any { it != 0.toByte() }
+        }
+
+        private fun readContent(size: Long): ByteArray {
+            val content = ByteArray(size.toInt())
+            input.readFully(content)
+            val padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE
+            input.readFully(ByteArray(padding.toInt()))
+            return content
+        }
+
+        private fun headerName(): String {
+            val name = string(0, 100)
+            // Old GNU archives keep other fields where POSIX archives keep the name's prefix
+            val isPosix = String(header, 257, 6, UTF_8) == "ustar\u0000"
+            val prefix = if (isPosix) string(345, 155) else ""
+            return if (prefix.isEmpty()) name else "$prefix/$name"
+        }
+
+        private fun string(offset: Int, length: Int): String {
+            val end = (offset until offset + length).firstOrNull { header[it] == 0.toByte() }
+                    ?: offset + length
+            return String(header, offset, end - offset, UTF_8).trim()
+        }
+
+        private fun octal(offset: Int, length: Int): Long {
+            return string(offset, length).toLongOrNull(8) ?: 0L
+        }
+    }
+}
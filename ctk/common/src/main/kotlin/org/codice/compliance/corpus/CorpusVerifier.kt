@@ -0,0 +1,178 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.corpus
+
+import de.jupf.staticlog.Log
+import org.codice.compliance.Common
+import org.codice.compliance.ID_REGISTRY_SIZE
+import org.codice.compliance.SAMLComplianceException
+import org.codice.compliance.Section
+import org.codice.compliance.attributeText
+import org.codice.compliance.report.Report
+import org.codice.compliance.utils.LOGOUT_RESPONSE
+import org.codice.compliance.utils.NodeDecorator
+import org.codice.compliance.utils.RESPONSE
+import org.codice.compliance.utils.TestCommon.Companion.currentSPEntityInfo
+import org.codice.compliance.utils.TestCommon.Companion.currentSPIssuer
+import org.codice.compliance.verification.binding.PostBindingVerifier
+import org.codice.compliance.verification.core.IdRegistry
+import org.codice.compliance.verification.core.responses.CoreAuthnRequestProtocolVerifier
+import org.codice.compliance.verification.core.responses.CoreLogoutResponseProtocolVerifier
+import org.codice.compliance.verification.profile.SingleLogoutProfileVerifier
+import org.codice.compliance.verification.profile.SingleSignOnProfileVerifier
+import org.codice.security.saml.SamlProtocol.Binding.HTTP_POST
+import org.opensaml.saml.common.SAMLObjectBuilder
+import org.opensaml.saml.saml2.core.RequestAbstractType
+import org.opensaml.saml.saml2.core.impl.AuthnRequestBuilder
+import org.opensaml.saml.saml2.core.impl.IssuerBuilder
+import org.opensaml.saml.saml2.core.impl.LogoutRequestBuilder
+import java.io.File
+import java.net.URLDecoder
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.UUID
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Verifies a corpus of messages captured from an IdP, e.g. a day of its production traffic,
+ * without sending it any request. Every message is a SAMLResponse form value of the post binding
+ * or the raw XML of the message. Responses and logout responses are verified like the tests
+ * verify the messages they receive, except for the checks that need the request or the HTTP
+ * response, since neither was captured. The messages are verified concurrently, on every core.
+ *
+ * All the messages are added to the {@code Report}, which keeps one exception per error, so the
+ * report of a corpus stays as small as the report of a test run. The {@link Summary} counts the
+ * messages that failed each section.
+ *
+ * @param threads - The number of messages verified at the same time
+ */
+class CorpusVerifier(private val threads: Int = Runtime.getRuntime().availableProcessors()) {
+    companion object {
+        private const val SAML_RESPONSE_FIELD = "SAMLResponse="
+        private const val QUEUED_MESSAGES_PER_THREAD = 4
+        private const val DEFAULT_EXPECTED_IDS = 1_000_000L
+    }
+
+    /** The number of messages verified and of the ones that failed, in total and per section */
+    class Summary {
+        val messages = AtomicLong()
+        val failedMessages = AtomicLong()
+        val unverifiedMessages = AtomicLong()
+        val failedMessagesPerSection = ConcurrentHashMap<Section, AtomicLong>()
+
+        internal fun add(exceptions: List<SAMLComplianceException>) {
+            messages.incrementAndGet()
+            if (exceptions.isEmpty()) return
+
+            failedMessages.incrementAndGet()
+            exceptions.map { it.section }.toSet().forEach {
+                failedMessagesPerSection.getOrPut(it) { AtomicLong() }.incrementAndGet()
+            }
+        }
+
+        override fun toString(): String {
+            val sections = failedMessagesPerSection.entries.sortedBy { it.key }
+                    .joinToString("") { "\n\t${it.key.title}: ${it.value} failed" }
+            return "${messages.get()} messages verified, ${failedMessages.get()} failed, " +
+                    "${unverifiedMessages.get()} could not be verified$sections"
+        }
+    }
+
+    /**
+     * Verifies every message of {@param corpus}
+     *
+     * @return the summary of the verified messages
+     */
+    fun verify(corpus: File): Summary {
+        // Resolves the service provider once, instead of on every thread
+        currentSPEntityInfo
+        // IDs must be unique across the whole corpus, which has too many IDs to keep all of them
+        IdRegistry.reset(java.lang.Long.getLong(ID_REGISTRY_SIZE, DEFAULT_EXPECTED_IDS))
+
+        val summary = Summary()
+        val executor = ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                ArrayBlockingQueue(threads * QUEUED_MESSAGES_PER_THREAD),
+                // Reading the corpus waits while every thread is busy
+                ThreadPoolExecutor.CallerRunsPolicy())
+        try {
+            CorpusReader.read(corpus) { message ->
+                executor.execute { verifyRecorded(message, summary) }
+            }
+        } finally {
+            executor.shutdown()
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+        }
+        return summary
+    }
+
+    @Suppress("TooGenericExceptionCaught" /* A message that can't be read isn't a finding */)
+    private fun verifyRecorded(message: CorpusMessage, summary: Summary) {
+        val recording = Report.Recording()
+        try {
+            recording.record { verify(message) }
+        } catch (e: SAMLComplianceException) {
+            recording.record { Report.addExceptionMessage(e) }
+        } catch (e: Exception) {
+            Log.error("${message.name} could not be verified: ${e.message}")
+            summary.unverifiedMessages.incrementAndGet()
+            return
+        }
+        recording.replay()
+        summary.add(recording.exceptions)
+    }
+
+    /**
+     * Verifies a single message. It must be called while recording, since its report updates are
+     * only applied once it's done.
+     */
+    private fun verify(message: CorpusMessage) {
+        val samlResponse = decodeAndVerify(String(message.content, UTF_8).trim())
+        val requestId = samlResponse.attributeText("InResponseTo")
+        when (samlResponse.localName) {
+            RESPONSE -> {
+                CoreAuthnRequestProtocolVerifier(request(AuthnRequestBuilder(), requestId),
+                        samlResponse).verify()
+                SingleSignOnProfileVerifier(samlResponse) { requestId }.verify()
+            }
+            LOGOUT_RESPONSE -> {
+                CoreLogoutResponseProtocolVerifier(request(LogoutRequestBuilder(), requestId),
+                        samlResponse, HTTP_POST).verify()
+                SingleLogoutProfileVerifier(samlResponse).verifyLogoutResponse()
+            }
+            else -> throw IllegalArgumentException(
+                    "${samlResponse.localName} is not a Response or a LogoutResponse.")
+        }
+    }
+
+    private fun decodeAndVerify(content: String): NodeDecorator {
+        if (content.startsWith("<")) {
+            return NodeDecorator(Common.buildDom(content.toByteArray(UTF_8).inputStream())).apply {
+                PostBindingVerifier.verifyDecoded(this)
+            }
+        }
+
+        val formValue = content.substringAfter(SAML_RESPONSE_FIELD).let {
+            if (it.contains('%')) URLDecoder.decode(it, UTF_8.name()) else it
+        }
+        return PostBindingVerifier.decodeAndVerifyFormValue(
+                formValue.filterNot { it.isWhitespace() })
+    }
+
+    /**
+     * The request of a captured response wasn't captured, so a request with the ID the response
+     * is in response to stands in for it.
+     */
+    private fun <T : RequestAbstractType> request(builder: SAMLObjectBuilder<T>, id: String?): T {
+        return builder.buildObject().apply {
+            this.id = id ?: "a${UUID.randomUUID()}"
+            issuer = IssuerBuilder().buildObject().apply { value = currentSPIssuer }
+        }
+    }
+}
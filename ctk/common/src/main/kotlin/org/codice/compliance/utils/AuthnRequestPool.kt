@@ -0,0 +1,235 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.utils
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import de.jupf.staticlog.Log
+import io.restassured.response.Response
+import org.apache.cxf.rs.security.saml.sso.SSOConstants.SAML_REQUEST
+import org.apache.wss4j.common.WSS4JConstants
+import org.codice.compliance.debugWithSupplier
+import org.codice.compliance.utils.SSOCommon.Companion.buildAuthnRequest
+import org.codice.compliance.utils.SSOCommon.Companion.sendPostAuthnRequest
+import org.codice.compliance.utils.SSOCommon.Companion.sendRedirectAuthnRequest
+import org.codice.compliance.utils.TestCommon.Companion.DEFAULT_SP_ENTITY_INFO
+import org.codice.compliance.utils.TestCommon.Companion.DEFAULT_SP_ISSUER
+import org.codice.compliance.utils.TestCommon.Companion.DSA_SP_ENTITY_INFO
+import org.codice.compliance.utils.TestCommon.Companion.DSA_SP_ISSUER
+import org.codice.compliance.utils.TestCommon.Companion.currentSPIssuer
+import org.codice.compliance.utils.TestCommon.Companion.samlObjectToString
+import org.codice.compliance.utils.sign.SimpleSign
+import org.codice.security.saml.SamlProtocol.Binding
+import org.codice.security.saml.SamlProtocol.Binding.HTTP_POST
+import org.codice.security.saml.SamlProtocol.Binding.HTTP_REDIRECT
+import org.codice.security.sign.Encoder.encodePostMessage
+import org.codice.security.sign.Encoder.encodeRedirectMessage
+import org.opensaml.saml.saml2.core.AuthnRequest
+import java.net.URI
+import java.time.Duration
+import java.util.UUID
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A signed and encoded AuthnRequest that is ready to be sent to the IdP. Sending it doesn't change
+ * the shared [TestCommon.REQUEST_ID], so the caller verifies the response against this request:
+ *
+ *     val request = pool.take(HTTP_POST)
+ *     val response = request.send()
+ *     ...
+ *     CoreAuthnRequestProtocolVerifier(request.authnRequest, samlResponseDom).verify()
+ *     SingleSignOnProfileVerifier(samlResponseDom) { request.id }.verify()
+ */
+class PreSignedAuthnRequest internal constructor(
+    val binding: Binding,
+    val authnRequest: AuthnRequest,
+    private val postBody: String?,
+    private val queryParams: Map<String, String>
+) {
+
+    val id: String
+        get() = authnRequest.id
+
+    /**
+     * @return true if the request was issued more than {@param maxAge} ago
+     */
+    fun isStale(maxAge: Duration): Boolean =
+            authnRequest.issueInstant.plus(maxAge.toMillis()).isBeforeNow
+
+    /**
+     * Sends the request to the IdP.
+     * @return The IdP response
+     */
+    fun send(): Response {
+        return if (binding == HTTP_POST) sendPostAuthnRequest(checkNotNull(postBody))
+        else sendRedirectAuthnRequest(queryParams)
+    }
+}
+
+/**
+ * Pre-builds, signs and encodes default AuthnRequests on background threads so request threads
+ * only have to dequeue and send them. Requests are kept per binding and per SP identity in
+ * bounded queues; requests older than {@param maxAge} are discarded when taken so the IdP doesn't
+ * reject them for their IssueInstant.
+ *
+ * @param capacity - the maximum number of requests queued per binding and SP identity
+ * @param maxAge - how old a request may be before it is discarded
+ * @param producers - the number of background threads producing requests
+ * @param produce - builds, signs and encodes a request for a binding and an SP issuer
+ */
+class AuthnRequestPool internal constructor(
+    capacity: Int,
+    private val maxAge: Duration,
+    producers: Int,
+    private val produce: (Binding, String) -> PreSignedAuthnRequest
+) : AutoCloseable {
+
+    constructor(
+        capacity: Int = DEFAULT_CAPACITY,
+        maxAge: Duration = DEFAULT_MAX_AGE,
+        producers: Int = DEFAULT_PRODUCERS
+    ) : this(capacity, maxAge, producers, { binding, issuer -> preSign(binding, issuer) })
+
+    companion object {
+        private const val DEFAULT_CAPACITY = 64
+        private const val DEFAULT_PRODUCERS = 2
+        private const val IDLE_MILLIS = 50L
+        private const val POLL_MILLIS = 100L
+        private val DEFAULT_MAX_AGE = Duration.ofMinutes(2)
+        private val DEFAULT_TIMEOUT = Duration.ofSeconds(30)
+
+        private val KEYS = listOf(HTTP_POST, HTTP_REDIRECT).flatMap { binding ->
+            listOf(DEFAULT_SP_ISSUER, DSA_SP_ISSUER).map { PoolKey(binding, it) }
+        }
+
+        /** [SimpleSign] isn't meant to be shared across threads, so each producer has its own */
+        private val signers = ThreadLocal.withInitial { mutableMapOf<String, SimpleSign>() }
+
+        private fun preSign(binding: Binding, issuer: String): PreSignedAuthnRequest {
+            val entityInfo =
+                    if (issuer == DSA_SP_ISSUER) DSA_SP_ENTITY_INFO else DEFAULT_SP_ENTITY_INFO
+            val signer = signers.get().getOrPut(issuer) {
+                SimpleSign(WSS4JConstants.DSA, URI(issuer).host)
+            }
+            // IDs have to start with a letter
+            val request = buildAuthnRequest(binding, issuer, entityInfo,
+                    "a" + UUID.randomUUID().toString())
+
+            return if (binding == HTTP_POST) {
+                signer.signSamlObject(request)
+                val encoded = encodePostMessage(SAML_REQUEST, samlObjectToString(request))
+                PreSignedAuthnRequest(binding, request, encoded, emptyMap())
+            } else {
+                val encoded = encodeRedirectMessage(samlObjectToString(request))
+                PreSignedAuthnRequest(binding, request, null,
+                        signer.signUriString(SAML_REQUEST, encoded, null))
+            }
+        }
+    }
+
+    private data class PoolKey(val binding: Binding, val issuer: String)
+
+    private val queues: Map<PoolKey, BlockingQueue<PreSignedAuthnRequest>> =
+            KEYS.associate { it to ArrayBlockingQueue<PreSignedAuthnRequest>(capacity) }
+
+    private val discarded = AtomicLong()
+
+    @Volatile
+    private var running = true
+
+    /** The last error of a producer, reported by [take] when no request comes in time */
+    @Volatile
+    private var lastFailure: Exception? = null
+
+    private val executor: ExecutorService = Executors.newFixedThreadPool(producers,
+            ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("authn-request-producer-%d")
+                    .build())
+
+    init {
+        repeat(producers) { executor.execute(Producer()) }
+    }
+
+    /**
+     * The number of requests that were discarded because they were stale when taken.
+     */
+    val discardedCount: Long
+        get() = discarded.get()
+
+    /**
+     * Takes the next fresh request, waiting for one to be produced if necessary.
+     *
+     * @param binding - HTTP_POST or HTTP_REDIRECT
+     * @param issuer - the SP identity issuing the request
+     * @param timeout - how long to wait for a fresh request
+     * @throws IllegalStateException if the pool is closed or no fresh request was produced within
+     * {@param timeout}, with the last error of the producers as its cause
+     */
+    fun take(
+        binding: Binding,
+        issuer: String = currentSPIssuer,
+        timeout: Duration = DEFAULT_TIMEOUT
+    ): PreSignedAuthnRequest {
+        val queue = requireNotNull(queues[PoolKey(binding, issuer)]) {
+            "No pre-signed requests are produced for $binding requests issued by $issuer."
+        }
+        val deadline = System.nanoTime() + timeout.toNanos()
+        while (System.nanoTime() < deadline) {
+            check(running) { "The AuthnRequest pool has been closed." }
+            val request = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS) ?: continue
+            if (!request.isStale(maxAge)) return request
+            discarded.incrementAndGet()
+        }
+        throw IllegalStateException("No $binding request issued by $issuer was pre-signed " +
+                "within $timeout.", lastFailure)
+    }
+
+    /**
+     * Stops the producers. Requests still queued are dropped.
+     */
+    override fun close() {
+        running = false
+        executor.shutdownNow()
+        queues.values.forEach { it.clear() }
+    }
+
+    /**
+     * Tops up every queue that has room.
+     */
+    private inner class Producer : Runnable {
+        override fun run() {
+            try {
+                while (running && !Thread.currentThread().isInterrupted) {
+                    if (!fillQueues()) Thread.sleep(IDLE_MILLIS)
+                }
+            } catch (e: InterruptedException) {
+                Thread.currentThread().interrupt()
+            }
+        }
+
+        @Suppress("TooGenericExceptionCaught" /* Reported by take() instead of ending the thread */)
+        private fun fillQueues(): Boolean {
+            var produced = false
+            for ((key, queue) in queues) {
+                if (queue.remainingCapacity() > 0) {
+                    try {
+                        produced = queue.offer(produce(key.binding, key.issuer)) || produced
+                    } catch (e: Exception) {
+                        lastFailure = e
+                        Log.debugWithSupplier { "Failed to pre-sign an AuthnRequest: ${e.message}" }
+                    }
+                }
+            }
+            return produced
+        }
+    }
+}
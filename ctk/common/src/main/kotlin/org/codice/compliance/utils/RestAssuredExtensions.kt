@@ -91,7 +91,7 @@
             .htmlPath()
             .getList("**.find { it.name() == 'form' }", Node::class.java)
             .firstOrNull {
-                it.recursiveChildren("input")
+                it.recursiveChildSequence("input")
                         .any { formControl ->
                             SAML_RESPONSE.equals(formControl.getAttribute(NAME),
                                     ignoreCase = true) ||
@@ -102,23 +102,15 @@
 }
 
 /**
- * Finds the immediate children of a {@code Node}.
+ * Lazily iterates the immediate children of a {@code Node}, last child first.
  *
  * @param name - Optional element name to match.
- * @return List of child {@code Nodes}.
+ * @return Sequence of child {@code Nodes}.
  */
-private fun Node.childrenSearch(name: String? = null): List<Node> {
-    val predicate: (Node) -> Boolean =
-            if (name == null) {
-                { true }
-            } else {
-                { it.name() == name }
-            }
-
-    return ((this.children().size() - 1) downTo 0)
-            .map { this.children().get(it) }
-            .filter(predicate)
-            .toList()
+fun Node.childSequence(name: String? = null): Sequence<Node> {
+    val children = this.children()
+    val all = (children.size() - 1 downTo 0).asSequence().map { children.get(it) }
+    return if (name == null) all else all.filter { it.name() == name }
 }
 
 /**
@@ -129,12 +121,43 @@
  * @return List of child {@code Nodes}.
  */
 fun Node.recursiveChildren(name: String? = null): List<Node> {
-    val nodes = mutableListOf<Node>()
-    this.childrenSearch().forEach {
-        if (name == null || name == it.name()) nodes.add(it)
-        nodes.addAll(it.recursiveChildren(name))
+    return recursiveChildSequence(name).toList()
+}
+
+/**
+ * Lazily iterates all of the children of a {@code Node}, in the same order as [recursiveChildren].
+ * Nothing past the children that are consumed is visited.
+ *
+ * @param name - Optional element name to match.
+ * @return Sequence of child {@code Nodes}.
+ */
+fun Node.recursiveChildSequence(name: String? = null): Sequence<Node> {
+    val all = Sequence { PreOrderIterator(this) }
+    return if (name == null) all else all.filter { it.name() == name }
+}
+
+/** Pre-order walk over the descendants of a GPath node, visiting the last child first. */
+private class PreOrderIterator(root: Node) : Iterator<Node> {
+    // The next node to visit is last, so children are pushed first child first
+    private val pending = mutableListOf<Node>()
+
+    init {
+        push(root)
+    }
+
+    override fun hasNext() = pending.isNotEmpty()
+
+    override fun next(): Node {
+        if (pending.isEmpty()) throw NoSuchElementException()
+        return pending.removeAt(pending.size - 1).also { push(it) }
+    }
+
+    private fun push(node: Node) {
+        val children = node.children()
+        for (i in 0 until children.size()) {
+            pending.add(children.get(i))
+        }
     }
-    return nodes
 }
 
 /**
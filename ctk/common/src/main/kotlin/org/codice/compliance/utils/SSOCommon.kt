@@ -36,10 +36,23 @@ fun createDefaultAuthnRequest(
             entityInfo: EntityInformation = currentSPEntityInfo
         ): AuthnRequest {
             REQUEST_ID = "a" + UUID.randomUUID().toString() // IDs have to start with a letter
+            return buildAuthnRequest(binding, requestIssuer, entityInfo, REQUEST_ID)
+        }
+
+        /**
+         * Builds a default request with the given ID without touching any shared state, so it can
+         * be called from background threads.
+         */
+        internal fun buildAuthnRequest(
+            binding: SamlProtocol.Binding,
+            requestIssuer: String,
+            entityInfo: EntityInformation,
+            requestId: String
+        ): AuthnRequest {
             return AuthnRequestBuilder().buildObject().apply {
                 issuer = IssuerBuilder().buildObject().apply { value = requestIssuer }
                 assertionConsumerServiceURL = entityInfo.getAssertionConsumerService(HTTP_POST)?.url
-                id = REQUEST_ID
+                id = requestId
                 version = SAMLVersion.VERSION_20
                 issueInstant = DateTime()
                 destination = getSingleSignOnLocation(binding.uri)
@@ -19,6 +19,8 @@
 import org.codice.compliance.SAMLGeneral_c
 import org.codice.compliance.USER_LOGIN
 import org.codice.compliance.debugPrettyPrintXml
+import org.codice.compliance.documentVersion
+import org.codice.compliance.markDocumentModified
 import org.codice.compliance.utils.sign.SimpleSign
 import org.codice.security.saml.IdpMetadata
 import org.codice.security.saml.SamlProtocol
@@ -39,7 +41,7 @@
 
 class TestCommon {
     companion object {
-        private const val DEFAULT_SP_ISSUER = "https://samlhost:8993/services/saml"
+        internal const val DEFAULT_SP_ISSUER = "https://samlhost:8993/services/saml"
         internal const val DSA_SP_ISSUER = "https://samlhostdsa:8994/services/samldsa"
 
         lateinit var REQUEST_ID: String
@@ -78,7 +80,7 @@ class TestCommon {
             parseSpMetadata()
         }
 
-        private val DEFAULT_SP_ENTITY_INFO by lazy {
+        internal val DEFAULT_SP_ENTITY_INFO by lazy {
             checkNotNull(spMetadata[DEFAULT_SP_ISSUER])
         }
 
@@ -224,7 +226,34 @@ class NodeDecorator(
     var hasEncryptedAssertion: Boolean = false,
     var isSigned: Boolean = false
 ) : DecoratedNode, Node by node {
+    private var unmarshalledObject: XMLObject? = null
+    private var unmarshalledVersion = node.documentVersion()
+
+    /**
+     * The OpenSAML representation of the message. It is unmarshalled from the message's document
+     * element the first time it is requested and shared until {@link #invalidate} is called or
+     * the document is marked as modified.
+     */
+    val xmlObject: XMLObject
+        get() {
+            if (unmarshalledVersion != node.documentVersion()) unmarshalledObject = null
+            return unmarshalledObject
+                    ?: OpenSAMLUtil.fromDom(node.ownerDocument.documentElement).also {
+                        unmarshalledObject = it
+                        unmarshalledVersion = node.documentVersion()
+                    }
+        }
+
     override fun getNode(): Node {
         return node
     }
+
+    /**
+     * Discards everything derived from the message's DOM. Must be called whenever the DOM is
+     * modified, e.g. after encrypted elements are decrypted and replaced.
+     */
+    fun invalidate() {
+        node.markDocumentModified()
+        unmarshalledObject = null
+    }
 }
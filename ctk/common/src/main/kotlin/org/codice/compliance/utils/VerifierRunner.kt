@@ -0,0 +1,69 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.utils
+
+import org.codice.compliance.PARALLEL_VERIFICATION
+import org.codice.compliance.prepareForConcurrentReads
+import org.codice.compliance.report.Report
+import org.w3c.dom.Node
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Runs verifiers that are independent of each other. When parallel verification is turned on with
+ * a system property, they run concurrently on the common fork-join pool, otherwise one after the
+ * other.
+ *
+ * Verifiers that run concurrently must only read the message's DOM and must only change shared
+ * state through the {@code Report}. Their report updates are recorded and applied in the order
+ * the verifiers were given once all of them are done, so the report is the same either way. If a
+ * verifier throws, only the updates of the verifiers before it and its own are applied before the
+ * exception is rethrown, as if the verifiers after it never ran.
+ */
+object VerifierRunner {
+
+    /** Whether parallel verification was turned on with a system property */
+    val isEnabled: Boolean
+        get() = System.getProperty(PARALLEL_VERIFICATION)?.toBoolean() == true
+
+    private class Outcome(val recording: Report.Recording, val exception: Exception?)
+
+    /**
+     * @param message - The message read by the verifiers. It must not be modified until they're
+     * done.
+     * @param verifiers - The verifiers, in the order they would run one after the other
+     */
+    fun run(message: Node, verifiers: List<() -> Unit>) {
+        if (!isEnabled || verifiers.size < 2) {
+            verifiers.forEach { it() }
+            return
+        }
+
+        message.prepareForConcurrentReads()
+        verifiers.map { ForkJoinPool.commonPool().submit(Callable { runRecorded(it) }) }
+                .map { it.join() }
+                .forEach {
+                    it.recording.replay()
+                    if (it.exception != null) throw it.exception
+                }
+    }
+
+    fun run(message: Node, vararg verifiers: () -> Unit) {
+        run(message, verifiers.toList())
+    }
+
+    @Suppress("TooGenericExceptionCaught" /* Rethrown on the calling thread */)
+    private fun runRecorded(verifier: () -> Unit): Outcome {
+        val recording = Report.Recording()
+        return try {
+            recording.record(verifier)
+            Outcome(recording, null)
+        } catch (e: Exception) {
+            Outcome(recording, e)
+        }
+    }
+}
@@ -10,7 +10,8 @@
 import org.apache.wss4j.common.crypto.Merlin
 import org.apache.xml.security.encryption.XMLCipher
 import org.bouncycastle.jce.provider.BouncyCastleProvider
-import org.codice.compliance.children
+import org.codice.compliance.childSequence
+import org.codice.compliance.markDocumentModified
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.utils.TestCommon.Companion.getCurrentSPHostname
 import org.w3c.dom.Document
@@ -78,7 +79,7 @@ internal fun decryptAndReplaceNode(node: Node): Node {
 
             val encElement = node as Element
             val ownerDocument = node.ownerDocument
-            val encData = encElement.children("EncryptedData").first() as Element
+            val encData = encElement.childSequence("EncryptedData").first() as Element
 
             val encKeyElements = encElement.recursiveChildren("EncryptedKey")
                     .map { it as Element }
@@ -97,16 +98,21 @@ internal fun decryptAndReplaceNode(node: Node): Node {
             try {
                 // Keep a reference Node, either a sibling (if it has one) or parent, of `node` in
                 // order to return the decrypted version of `node`
-                return if (encData.previousSibling != null) {
+                val decryptedNode = if (encData.previousSibling != null) {
                     val referenceNode = encData.previousSibling
                     encryptionCipher.doFinal(ownerDocument, encData)
-                    node.parentNode.replaceChild(referenceNode.nextSibling, node)
+                    referenceNode.nextSibling
                 } else {
                     val referenceNode = encData.parentNode
                     encryptionCipher.doFinal(ownerDocument, encData)
-                    node.parentNode.replaceChild(referenceNode.firstChild, node)
+                    referenceNode.firstChild
                 }
+                node.parentNode.replaceChild(decryptedNode, node)
+                ownerDocument.markDocumentModified()
+                return decryptedNode
             } catch (e: Exception) {
+                // The cipher may have replaced the encrypted data before failing
+                ownerDocument.markDocumentModified()
                 messageBuilder.append("The data could not be decrypted.")
                 throw XMLDecryptorException(messageBuilder.toString(), e)
             }
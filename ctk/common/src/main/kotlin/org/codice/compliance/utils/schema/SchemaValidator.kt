@@ -6,25 +6,28 @@
 */
 package org.codice.compliance.utils.schema
 
+import de.jupf.staticlog.Log
+import org.codice.compliance.DecoratedNode
 import org.codice.compliance.SAMLComplianceException
 import org.codice.compliance.SAMLCore_Schema
+import org.codice.compliance.debugWithSupplier
+import org.codice.compliance.documentVersion
 import org.codice.compliance.prettyPrintXml
 import org.codice.compliance.report.Report
 import org.codice.compliance.Section.SCHEMA
 import org.w3c.dom.Element
 import org.w3c.dom.Node
 import org.xml.sax.ErrorHandler
+import org.xml.sax.SAXException
 import org.xml.sax.SAXParseException
-import java.io.ByteArrayInputStream
-import java.io.ByteArrayOutputStream
-import java.io.InputStream
+import java.util.Collections
+import java.util.WeakHashMap
 import javax.xml.XMLConstants
-import javax.xml.parsers.DocumentBuilderFactory
-import javax.xml.transform.TransformerFactory
 import javax.xml.transform.dom.DOMSource
-import javax.xml.transform.stream.StreamResult
+import javax.xml.validation.Schema
 import javax.xml.validation.SchemaFactory
 import javax.xml.validation.Validator
+import kotlin.concurrent.thread
 
 class SchemaValidator {
     companion object {
@@ -42,15 +45,64 @@ class SchemaValidator {
                 "http://www.w3.org/2001/04/xmlenc#" to "xenc-schema.xsd"
         )
 
+        /**
+         * The compiled protocol schema, which includes the assertion, xmldsig and xenc grammars.
+         * A {@code Schema} is thread-safe, so it's compiled once and every validation creates its
+         * own {@code Validator} from it.
+         */
+        private val protocolSchema by lazy { compileSchema(PROTOCOL_SCHEMA) }
+
+        /**
+         * Starts compiling the protocol schema on a daemon thread, so it's compiled while the
+         * tests start up instead of during the first validation. A validation that starts before
+         * the compilation is done waits for it.
+         */
+        fun preloadSchema() {
+            thread(isDaemon = true, name = "schema-preloader") {
+                try {
+                    protocolSchema
+                } catch (e: SAXException) {
+                    // The first validation will compile the schema again and report the error
+                    Log.debugWithSupplier { "Failed to preload the SAML schema: ${e.message}" }
+                }
+            }
+        }
+
+        /**
+         * A {@code Validator} isn't thread-safe, so every thread validates with its own. They're
+         * reset after every validation.
+         */
+        private val validators = ThreadLocal.withInitial { protocolSchema.newValidator() }
+
+        /**
+         * The result of the last validation of each node, for the [documentVersion] it was
+         * validated at. Nodes are weakly referenced so messages can still be garbage collected.
+         */
+        private val validationResults =
+                Collections.synchronizedMap(WeakHashMap<Node, ValidationResult>())
+
         /**
          * Validate SAML against the protocol schema. Assumes that the message is well-formed
+         *
+         * The node is validated in place. For a fragment, e.g. a decrypted element, the namespace
+         * declarations of its ancestors stay in scope.
+         *
+         * A node is only validated again once its document was modified, e.g. by decryption.
+         * Until then the result of the previous validation is reported again.
          */
         fun validateSAMLMessage(saml: Node) {
             SCHEMA.start()
-            validateSAML(nodeToInputStream(saml), PROTOCOL_SCHEMA)
+            val node = if (saml is DecoratedNode) saml.getNode() else saml
+            val version = node.documentVersion()
+
+            val result = validationResults[node]?.takeIf { it.documentVersion == version }
+                    ?: ValidationResult(version, validateSAML(node)).also {
+                        validationResults[node] = it
+                    }
+            result.exception?.let { Report.addExceptionMessage(it) }
         }
 
-        private fun validateSAML(saml: InputStream, xsd: String) {
+        private fun compileSchema(xsd: String): Schema {
             // Load schema, overriding external schema references with local copies
             val schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
             schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "file")
@@ -62,35 +114,36 @@ private fun validateSAML(saml: InputStream, xsd: String) {
                     }
                     .joinToString("\n")
             )
-            val schema = schemaFactory.newSchema(this::class.java.classLoader.getResource(xsd))
-
-            // Load SAML for validation
-            val dbf = DocumentBuilderFactory.newInstance()
-            dbf.isNamespaceAware = true
-            val doc = dbf.newDocumentBuilder().parse(saml)
+            return schemaFactory.newSchema(this::class.java.classLoader.getResource(xsd))
+        }
 
-            // Validate
-            val validator = schema.newValidator()
+        /** @return the exception with all of the schema errors, or null if there were none */
+        private fun validateSAML(saml: Node): SAMLComplianceException? {
+            val validator = validators.get()
+            // The error handler reads the current node from the validator, so each validation
+            // gets its own handler for the validator it runs on
             val errorHandler = SAMLErrorHandler(validator)
             validator.errorHandler = errorHandler
-            validator.validate(DOMSource(doc.documentElement))
-
-            if (errorHandler.messages.isNotEmpty()) {
-                val compiledErrors = errorHandler.messages.joinToString("\n")
-                Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_Schema,
-                        message = "Invalid SAML message\n$compiledErrors"))
+            try {
+                validator.validate(DOMSource(saml))
+            } finally {
+                validator.reset()
+                validator.errorHandler = null
             }
-        }
 
-        private fun nodeToInputStream(node: Node): InputStream {
-            val outputStream = ByteArrayOutputStream()
-            val xmlSource = DOMSource(node)
-            val outputTarget = StreamResult(outputStream)
-            TransformerFactory.newInstance().newTransformer().transform(xmlSource, outputTarget)
-            return ByteArrayInputStream(outputStream.toByteArray())
+            return if (errorHandler.messages.isNotEmpty()) {
+                val compiledErrors = errorHandler.messages.joinToString("\n")
+                SAMLComplianceException.create(SAMLCore_Schema,
+                        message = "Invalid SAML message\n$compiledErrors")
+            } else null
         }
     }
 
+    private class ValidationResult(
+        val documentVersion: Long,
+        val exception: SAMLComplianceException?
+    )
+
     private class SAMLErrorHandler(validator: Validator) : ErrorHandler {
         private val xsdValidator = validator
         val messages = mutableListOf<String>()
@@ -13,6 +13,8 @@
 import org.codice.compliance.SAMLGeneral_b
 import org.codice.compliance.utils.NodeDecorator
 import org.codice.compliance.utils.RESPONSE
+import org.codice.compliance.utils.TestCommon.Companion.getCurrentSPHostname
+import org.codice.compliance.utils.sign.SignatureValidationService
 import org.codice.compliance.utils.sign.SimpleSign
 import org.opensaml.saml.saml2.core.RequestAbstractType
 import org.opensaml.saml.saml2.core.StatusResponseType
@@ -48,23 +50,29 @@ fun isErrorHttpStatusCode(code: Int): Boolean {
         /**
          * Verifies the response's and assertions' signatures.
          * Returns true if the SAML message is signed. Returns false, otherwise.
+         *
+         * If {@param node} is a {@code NodeDecorator}, its shared unmarshalled object is used
+         * instead of unmarshalling the message again.
          * */
         fun verifyXmlSignatures(node: Node): Boolean {
             try {
-                val docElement = node.ownerDocument.documentElement
+                val samlObject = if (node is NodeDecorator) node.xmlObject
+                else OpenSAMLUtil.fromDom(node.ownerDocument.documentElement)
 
                 val samlResponseObject =
                         if (node.nodeName.contains(RESPONSE))
-                            OpenSAMLUtil.fromDom(docElement) as StatusResponseType
-                        else OpenSAMLUtil.fromDom(docElement) as RequestAbstractType
+                            samlObject as StatusResponseType
+                        else samlObject as RequestAbstractType
 
+                val validationService =
+                        SignatureValidationService.forHostname(getCurrentSPHostname())
                 if (samlResponseObject.isSigned)
-                    SimpleSign().validateSignature(samlResponseObject.signature)
+                    validationService.validate(samlResponseObject.signature)
 
                 if (samlResponseObject is org.opensaml.saml.saml2.core.Response) {
                     samlResponseObject.assertions
                             .filter { it.isSigned }
-                            .forEach { SimpleSign().validateSignature(it.signature) }
+                            .forEach { validationService.validate(it.signature) }
                 }
 
                 return samlResponseObject.isSigned
@@ -30,7 +30,7 @@
 import org.codice.compliance.utils.extractValue
 import org.codice.compliance.utils.hasNoAttributeWithNameAndValue
 import org.codice.compliance.utils.isNotHidden
-import org.codice.compliance.utils.recursiveChildren
+import org.codice.compliance.utils.recursiveChildSequence
 
 @Suppress("StringLiteralDuplication" /* Duplicated phrases in exception messages. */)
 class PostFormVerifier(
@@ -60,12 +60,12 @@ class PostFormVerifier(
     init {
         samlMessageFormControl =
                 samlMessageForm
-                        ?.recursiveChildren("input")
+                        ?.recursiveChildSequence("input")
                         ?.firstOrNull(isNamedCorrectly)
         samlMessage = samlMessageFormControl?.extractValue()
         relayStateFormControl =
                 samlMessageForm
-                        ?.recursiveChildren("input")
+                        ?.recursiveChildSequence("input")
                         ?.firstOrNull(isNamedRelayState)
         relayState = relayStateFormControl?.extractValue()
     }
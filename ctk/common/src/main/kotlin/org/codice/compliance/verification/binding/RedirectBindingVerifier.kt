@@ -31,7 +31,7 @@
 import org.codice.compliance.SAMLComplianceException
 import org.codice.compliance.SAMLGeneral_a
 import org.codice.compliance.attributeNode
-import org.codice.compliance.children
+import org.codice.compliance.childSequence
 import org.codice.compliance.debugPrettyPrintXml
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.utils.DESTINATION
@@ -51,14 +51,14 @@
 import org.codice.compliance.verification.core.CommonDataTypeVerifier.Companion.verifyUriValue
 import org.codice.security.saml.SamlProtocol.Binding.HTTP_REDIRECT
 import org.codice.security.sign.Decoder
+import org.codice.security.sign.Decoder.DecoderException.InflErrorCode
 import org.codice.security.sign.Decoder.DecoderException.InflErrorCode.ERROR_BASE64_DECODING
 import org.codice.security.sign.Decoder.DecoderException.InflErrorCode.ERROR_INFLATING
 import org.codice.security.sign.Decoder.DecoderException.InflErrorCode.ERROR_URL_DECODING
+import org.codice.security.sign.Decoder.DecoderException.InflErrorCode.INFLATED_SIZE_EXCEEDED
 import org.codice.security.sign.Decoder.DecoderException.InflErrorCode.LINEFEED_OR_WHITESPACE
+import org.codice.security.sign.RedirectQueryString
 import org.w3c.dom.Node
-import java.io.UnsupportedEncodingException
-import java.net.URLDecoder
-import java.nio.charset.StandardCharsets
 
 @Suppress("TooManyFunctions" /* At least at present, there is no value in refactoring */)
 class RedirectBindingVerifier(httpResponse: Response) : BindingVerifier(httpResponse) {
@@ -70,8 +70,8 @@ override fun decodeAndVerify(): NodeDecorator {
         verifyRedirectRelayState(paramMap[RELAY_STATE])
         val samlResponseDom = decode(paramMap)
         verifyNoXMLSig(samlResponseDom)
-        verifyXmlSignatures(samlResponseDom) // Should verify assertions signature
         val nodeDecorator = NodeDecorator(samlResponseDom)
+        verifyXmlSignatures(nodeDecorator) // Should verify assertions signature
         paramMap[SIGNATURE]?.let {
             verifyRedirectSignature(paramMap)
             verifyRedirectDestination(nodeDecorator)
@@ -117,20 +117,10 @@ private fun verifyNoNullsAndParse(): Map<String, String> {
                 SAMLBindings_3_4_4_b,
                 message = "Url not found.")
 
-        val splitUrl = url.split("?")
-
-        splitUrl.getOrNull(0) ?: throw SAMLComplianceException.create(
-                SAMLBindings_3_4_4_b,
-                message = "Path not found.")
-
-        val parameters = splitUrl.getOrNull(1) ?: throw SAMLComplianceException.create(
+        val paramMap = RedirectQueryString.parse(url) ?: throw SAMLComplianceException.create(
                 SAMLBindings_3_4_4_b,
                 message = "Parameters not found.")
 
-        val paramMap = parameters.split("&")
-                .map { s -> s.split("=") }
-                .associate { s -> s[0] to s[1] }
-
         if (!isSamlRequest && paramMap[SAML_RESPONSE] == null)
             throw SAMLComplianceException.create(
                     SAMLBindings_3_4_4_b,
@@ -158,14 +148,13 @@ private fun verifyNoNullsAndParse(): Map<String, String> {
      * rules in the binding spec
      * 3.4.4.1 Deflate Encoding
      */
-    @Suppress("ComplexMethod" /* Complexity due to nested `when` is acceptable */)
     private fun decode(paramMap: Map<String, String>): Node {
         val message = paramMap[SAML_RESPONSE] ?: paramMap[SAML_REQUEST]
         // Need to url decode SAMLEncoding first to check the encoding method uri
         val samlEncoding = paramMap[SAML_ENCODING]?.let {
             try {
-                URLDecoder.decode(it, StandardCharsets.UTF_8.name())
-            } catch (e: UnsupportedEncodingException) {
+                RedirectQueryString.decode(it)
+            } catch (e: IllegalArgumentException) {
                 throw SAMLComplianceException.create(SAMLBindings_3_4_4_1_c,
                         message = "Could not url decode the SAMLEncoding parameter.",
                         cause = e)
@@ -176,43 +165,59 @@ private fun decode(paramMap: Map<String, String>): Node {
         // A query string parameter named SAMLEncoding is reserved to identify the encoding
         // mechanism used. If this parameter is omitted, then the value is assumed to be
         // urn:oasis:names:tc:SAML:2.0:bindings:URL-Encoding:DEFLATE.
-        val decodedMessage = if (samlEncoding == null ||
-                samlEncoding == "urn:oasis:names:tc:SAML:2.0:bindings:URL-Encoding:DEFLATE") {
-            try {
-                Decoder.decodeAndInflateRedirectMessage(message)
-            } catch (e: Decoder.DecoderException) {
-                when (e.inflErrorCode) {
-                    ERROR_URL_DECODING ->
-                        throw SAMLComplianceException.create(SAMLBindings_3_4_4_1_c,
-                                message = "Could not url decode the SAML response.",
-                                cause = e)
-                    ERROR_BASE64_DECODING ->
-                        throw SAMLComplianceException.create(SAMLBindings_3_4_4_1_c,
-                                message = "Could not base64 decode the SAML response.",
-                                cause = e)
-                    ERROR_INFLATING -> throw SAMLComplianceException.create(
-                            SAMLBindings_3_4_4_1_b,
-                            SAMLBindings_3_4_4_1_a,
-                            message = "Could not inflate the SAML response.",
-                            cause = e)
-                    LINEFEED_OR_WHITESPACE ->
-                        throw SAMLComplianceException.create(
-                                SAMLBindings_3_4_4_1_b,
-                                message = "There were linefeeds or whitespace in the SAML " +
-                                        "response.",
-                                cause = e)
-                    else -> throw SAMLComplianceException.create(
-                            SAMLBindings_3_4_4_1_b,
-                            SAMLBindings_3_4_4_1_a,
-                            message = "Something went wrong with the SAML response.",
-                            cause = e)
-                }
-            }
-        } else throw UnsupportedOperationException("This test suite only supports DEFLATE " +
-                "encoding currently.")
+        if (samlEncoding != null &&
+                samlEncoding != "urn:oasis:names:tc:SAML:2.0:bindings:URL-Encoding:DEFLATE") {
+            throw UnsupportedOperationException("This test suite only supports DEFLATE " +
+                    "encoding currently.")
+        }
+
+        val samlResponseDom = try {
+            Common.buildDom(Decoder.redirectMessageStream(message))
+        } catch (e: Decoder.DecoderException) {
+            throw decodingFailure(e.inflErrorCode, e)
+        } catch (e: Decoder.DecoderStreamException) {
+            throw decodingFailure(e.inflErrorCode, e)
+        }
 
-        decodedMessage.debugPrettyPrintXml("Decoded SAML Response")
-        return Common.buildDom(decodedMessage)
+        samlResponseDom.debugPrettyPrintXml("Decoded SAML Response")
+        return samlResponseDom
+    }
+
+    private fun decodingFailure(
+        inflErrorCode: InflErrorCode,
+        cause: Exception
+    ): SAMLComplianceException {
+        return when (inflErrorCode) {
+            ERROR_URL_DECODING ->
+                SAMLComplianceException.create(SAMLBindings_3_4_4_1_c,
+                        message = "Could not url decode the SAML response.",
+                        cause = cause)
+            ERROR_BASE64_DECODING ->
+                SAMLComplianceException.create(SAMLBindings_3_4_4_1_c,
+                        message = "Could not base64 decode the SAML response.",
+                        cause = cause)
+            ERROR_INFLATING -> SAMLComplianceException.create(
+                    SAMLBindings_3_4_4_1_b,
+                    SAMLBindings_3_4_4_1_a,
+                    message = "Could not inflate the SAML response.",
+                    cause = cause)
+            INFLATED_SIZE_EXCEEDED -> SAMLComplianceException.create(
+                    SAMLBindings_3_4_4_1_b,
+                    message = "The inflated SAML response exceeded the maximum allowed size.\n" +
+                            "${cause.cause?.message}",
+                    cause = cause)
+            LINEFEED_OR_WHITESPACE ->
+                SAMLComplianceException.create(
+                        SAMLBindings_3_4_4_1_b,
+                        message = "There were linefeeds or whitespace in the SAML " +
+                                "response.",
+                        cause = cause)
+            else -> SAMLComplianceException.create(
+                    SAMLBindings_3_4_4_1_b,
+                    SAMLBindings_3_4_4_1_a,
+                    message = "Something went wrong with the SAML response.",
+                    cause = cause)
+        }
     }
 
     /**
@@ -221,7 +226,7 @@ private fun decode(paramMap: Map<String, String>): Node {
      * 3.4.4.1 DEFLATE Encoding
      */
     private fun verifyNoXMLSig(samlResponseDom: Node) {
-        if (samlResponseDom.children("Signature").isNotEmpty()) {
+        if (samlResponseDom.childSequence("Signature").any()) {
             throw SAMLComplianceException.create(SAMLBindings_3_4_4_1_a,
                     message = "Signature element found.",
                     node = samlResponseDom)
@@ -237,9 +242,7 @@ private fun verifyRedirectSignature(paramMap: Map<String, String>) {
         // Need to url decode SigAlg first to check the signature algorithm uri
         // It is guaranteed SigAlg can be url decoded because it already has been in decodeAndVerify
         val samlType = if (isSamlRequest) SAML_REQUEST else SAML_RESPONSE
-        val sigAlg = paramMap[SIG_ALG]?.let {
-            URLDecoder.decode(it, StandardCharsets.UTF_8.name())
-        }
+        val sigAlg = paramMap[SIG_ALG]?.let { RedirectQueryString.decode(it) }
         verifyUriValue(sigAlg, SAMLBindings_3_4_4_1_e)
 
         try {
@@ -296,9 +299,8 @@ private fun verifyRedirectRelayState(encodedRelayState: String?) {
         if (isRelayStateGiven || encodedRelayState != null) {
             val decodedRelayState: String
             try {
-                decodedRelayState =
-                        URLDecoder.decode(encodedRelayState, StandardCharsets.UTF_8.name())
-            } catch (e: UnsupportedEncodingException) {
+                decodedRelayState = RedirectQueryString.decode(checkNotNull(encodedRelayState))
+            } catch (e: IllegalArgumentException) {
                 throw SAMLComplianceException.create(SAMLBindings_3_4_4_1_d,
                         message = "RelayState could not be URL decoded.",
                         cause = e)
@@ -13,7 +13,6 @@
 import org.codice.compliance.SAMLCore_1_3_4_a
 import org.codice.compliance.SAMLSpecRefMessage
 import org.codice.compliance.attributeTextNS
-import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
 import org.codice.compliance.Section.CORE_1_3
 import org.codice.compliance.utils.ID
@@ -23,21 +22,12 @@
 
 class CommonDataTypeVerifier {
     companion object {
-        private var ids = mutableListOf<String>()
+        internal val CODES =
+                listOf(SAMLCore_1_3_1_a, SAMLCore_1_3_2_a, SAMLCore_1_3_3_a, SAMLCore_1_3_4_a)
 
         /** 1.3 Common Data Types **/
         fun verifyCommonDataType(samlDom: Node) {
-            CORE_1_3.start()
-            samlDom.recursiveChildren().forEach {
-                it.attributeTextNS(XSI, "type")?.let { type ->
-                    when {
-                        type.contains("string") -> verifyStringValue(it)
-                        type.contains("anyURI") -> verifyUriValue(it)
-                        type.contains("dateTime") -> verifyDateTimeValue(it)
-                        type.contains(ID) -> verifyIdValue(it)
-                    }
-                }
-            }
+            VerificationWalker(Visitor()).walk(samlDom)
         }
 
         /** 1.3.1 String Values **/
@@ -105,18 +95,40 @@ fun verifyDateTimeValue(node: Node?, errorCode: SAMLSpecRefMessage? = null) {
 
         /** 1.3.4 ID and ID Reference Values **/
         fun verifyIdValue(node: Node?, errorCode: SAMLSpecRefMessage? = null) {
-            if (node != null && !ids.contains(node.textContent)) {
-                ids.add(node.textContent)
-                return
+            // Through the report, so the duplicate of an ID is the same one whatever the order
+            // concurrent verifiers run in
+            Report.update {
+                if (node == null || !IdRegistry.add(node.textContent)) {
+                    val errorMessage = "The ID value of [${node?.textContent}] is not unique."
+                    Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_1_3_4_a,
+                            message = errorMessage))
+
+                    if (errorCode != null) {
+                        Report.addExceptionMessage(SAMLComplianceException.create(errorCode,
+                                SAMLCore_1_3_4_a,
+                                message = errorMessage))
+                    }
+                }
             }
-            val errorMessage = "The ID value of [${node?.textContent}] is not unique."
-            Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_1_3_4_a,
-                    message = errorMessage))
+        }
+    }
 
-            if (errorCode != null) {
-                Report.addExceptionMessage(SAMLComplianceException.create(errorCode,
-                        SAMLCore_1_3_4_a,
-                        message = errorMessage))
+    /** 1.3 Common Data Types of the elements carrying an {@code xsi:type} */
+    internal class Visitor : ElementVisitor {
+        override val attributeNames = setOf("type")
+
+        override fun start(root: Node) {
+            CORE_1_3.start()
+        }
+
+        override fun visit(element: Node) {
+            element.attributeTextNS(XSI, "type")?.let { type ->
+                when {
+                    type.contains("string") -> verifyStringValue(element)
+                    type.contains("anyURI") -> verifyUriValue(element)
+                    type.contains("dateTime") -> verifyDateTimeValue(element)
+                    type.contains(ID) -> verifyIdValue(element)
+                }
             }
         }
     }
@@ -25,12 +25,16 @@
 import org.codice.compliance.utils.STATUS_CODE
 import org.codice.compliance.utils.schema.SchemaValidator
 import org.codice.compliance.utils.topLevelStatusCodes
-import org.codice.compliance.verification.core.CommonDataTypeVerifier.Companion.verifyCommonDataType
+import org.codice.compliance.verification.rules.Rule
+import org.codice.compliance.verification.rules.RuleRegistry
 import org.w3c.dom.Node
 import java.time.Instant
 
 abstract class CoreVerifier(private val samlNode: NodeDecorator) {
     companion object {
+        private val ENCRYPTED_ELEMENTS =
+                listOf("EncryptedAssertion", "EncryptedAttribute", "EncryptedID")
+
         /**
          * Verifies that a response has the expected status code.
          * This should be called explicitly if an error is expected.
@@ -110,10 +114,9 @@ internal fun validateTimeWindow(node: Node, samlCode: SAMLCoreRefMessage) {
             }
         }
 
-        private fun retrieveCurrentEncryptedElements(responseDom: Node): List<Node> {
-            return responseDom.recursiveChildren("EncryptedAssertion") +
-                    responseDom.recursiveChildren("EncryptedAttribute") +
-                    responseDom.recursiveChildren("EncryptedID")
+        private fun retrieveCurrentEncryptedElements(node: Node): List<Node> {
+            // Indexed lookups, so asking for each element type doesn't walk the message again
+            return ENCRYPTED_ELEMENTS.flatMap { node.recursiveChildren(it) }
         }
     }
 
@@ -122,37 +125,78 @@ private fun retrieveCurrentEncryptedElements(responseDom: Node): List<Node> {
      */
     open fun verify() {
         SchemaValidator.validateSAMLMessage(samlNode)
-        preProcess()
-        verifyCommonDataType(samlNode)
-        SamlAssertionsVerifier(samlNode).verify()
-        SamlVersioningVerifier(samlNode).verify()
-        SignatureSyntaxAndProcessingVerifier(samlNode).verify()
-        SamlDefinedIdentifiersVerifier(samlNode).verify()
+        decryptElements(retrieveCurrentEncryptedElements(samlNode))
+
+        // Nothing modifies the message anymore, so the rules can run concurrently
+        RuleRegistry.run(samlNode, coreRules() + rules())
+    }
+
+    /**
+     * Rules of subclasses that only read the message. They run after the core rules, or
+     * alongside them when parallel verification is turned on.
+     */
+    protected open fun rules(): List<Rule> = emptyList()
+
+    private fun coreRules(): List<Rule> {
+        val elementCodes = (CommonDataTypeVerifier.CODES + SamlVersioningVerifier.CODES +
+                SignatureSyntaxAndProcessingVerifier.CODES + SamlDefinedIdentifiersVerifier.CODES)
+                .distinct()
+
+        // The verifiers that check single elements share one walk of the message, so they're
+        // timed as one rule
+        val elementsRule = Rule("1.3, 4, 5 and 8 Element Checks", elementCodes) {
+            VerificationWalker(CommonDataTypeVerifier.Visitor(),
+                    SamlVersioningVerifier.Visitor(),
+                    SignatureSyntaxAndProcessingVerifier.Visitor(),
+                    SamlDefinedIdentifiersVerifier.Visitor()).walk(samlNode)
+        }
+        // Also verifies the name identifiers of messages without assertions
+        val assertionsRule = Rule("2 SAML Assertions", SamlAssertionsVerifier.CODES) {
+            SamlAssertionsVerifier(samlNode).verify()
+        }
+        return listOf(elementsRule, assertionsRule)
     }
 
     open fun verifyEncryptedElements() {
     }
 
+    /**
+     * Decrypts all of the encrypted elements of the message, including the ones nested in other
+     * encrypted elements. The message is schema validated once before decryption and every
+     * decrypted fragment is validated on its own, so nothing is validated twice.
+     */
     fun preProcess(encVerifier: EncryptionVerifier = EncryptionVerifier()) {
         val encElements = retrieveCurrentEncryptedElements(samlNode)
-        if (encElements.isEmpty()) {
+        if (encElements.isNotEmpty()) SchemaValidator.validateSAMLMessage(samlNode)
+        decryptElements(encElements, encVerifier)
+    }
+
+    private fun decryptElements(
+        initialEncElements: List<Node>,
+        encVerifier: EncryptionVerifier = EncryptionVerifier()
+    ) {
+        var encElements = initialEncElements
+        while (encElements.isNotEmpty()) {
             Log.debugWithSupplier {
-                "Decrypted SAML Response:\n\n ${samlNode.prettyPrintXml()}"
+                "Starting a pass of decryption and schema validation on the SAML Response."
             }
-            return
-        }
 
-        Log.debugWithSupplier {
-            "Starting a pass of decryption and schema validation on the SAML Response."
-        }
+            verifyEncryptedElements()
 
-        SchemaValidator.validateSAMLMessage(samlNode)
-        verifyEncryptedElements()
+            if (encElements.any { it.localName == "EncryptedAssertion" })
+                samlNode.hasEncryptedAssertion = true
+
+            val decryptedNodes = encVerifier.verifyAndDecryptElements(encElements)
+            samlNode.invalidate()
 
-        if (encElements.any { it.localName == "EncryptedAssertion" })
-            samlNode.hasEncryptedAssertion = true
+            // Only the decrypted fragments can contain encrypted elements that weren't seen yet
+            val decryptedElements = decryptedNodes.filter { it.nodeType == Node.ELEMENT_NODE }
+            decryptedElements.forEach { SchemaValidator.validateSAMLMessage(it) }
+            encElements = decryptedElements.flatMap { retrieveCurrentEncryptedElements(it) }
+        }
 
-        encVerifier.verifyAndDecryptElements(encElements)
-        preProcess(encVerifier)
+        Log.debugWithSupplier {
+            "Decrypted SAML Response:\n\n ${samlNode.prettyPrintXml()}"
+        }
     }
 }
@@ -0,0 +1,41 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.verification.core
+
+import org.w3c.dom.Node
+
+/**
+ * A verifier that registers the elements it's interested in, so a [VerificationWalker] can run
+ * several verifiers in a single walk of a message.
+ *
+ * An element is visited if its local name is one of the [elementNames] or it carries an attribute
+ * whose local name is one of the [attributeNames].
+ */
+internal interface ElementVisitor {
+    /** Local names of the elements to visit */
+    val elementNames: Set<String>
+        get() = emptySet()
+
+    /** Local names of the attributes whose elements are visited */
+    val attributeNames: Set<String>
+        get() = emptySet()
+
+    /** Whether every element is visited, regardless of its name and attributes */
+    val visitsAllElements: Boolean
+        get() = false
+
+    /** Called with the root of the message before any of its descendants are visited. */
+    fun start(root: Node) {
+    }
+
+    /** Called for every descendant element of the root that this visitor is interested in. */
+    fun visit(element: Node)
+
+    /** Called with the root of the message once all of its descendants were visited. */
+    fun finish(root: Node) {
+    }
+}
@@ -34,18 +34,19 @@ class EncryptionVerifier {
      * </ol>
      *
      * @param encElements A list of encrypted nodes to verify and decrypt
+     * @return the decrypted nodes that replaced the encrypted elements that could be decrypted
      */
-    fun verifyAndDecryptElements(encElements: List<Node>) {
+    fun verifyAndDecryptElements(encElements: List<Node>): List<Node> {
         CORE_6_1.start()
-        encElements.forEach {
+        return encElements.mapNotNull {
             verifyAndDecryptElement(it)
         }
     }
 
-    private fun verifyAndDecryptElement(element: Node) {
+    private fun verifyAndDecryptElement(element: Node): Node? {
         verifyEncryptedElement(element)
 
-        try {
+        return try {
             XMLDecrypter.decryptAndReplaceNode(element)
         } catch (e: XMLDecryptorException) {
             Report.addExceptionMessage(SAMLComplianceException.create(
@@ -53,6 +54,7 @@ private fun verifyAndDecryptElement(element: Node) {
                     message = e.message,
                     cause = e.cause,
                     node = element))
+            null
         }
     }
 
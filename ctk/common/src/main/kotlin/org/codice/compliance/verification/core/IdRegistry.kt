@@ -0,0 +1,121 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.verification.core
+
+import com.google.common.hash.Hashing
+import org.codice.compliance.ID_REGISTRY_SIZE
+import java.nio.charset.StandardCharsets.UTF_8
+
+/**
+ * The ID values seen so far, so ID values that aren't unique can be found (1.3.4). IDs are
+ * remembered for a whole run, since an IdP must not reuse an ID in different messages either,
+ * until [reset] is called.
+ *
+ * IDs are kept in a hash set, unless the {@code ID_REGISTRY_SIZE} system property is set to the
+ * number of IDs expected in a run, or a number is given to [reset]. Then only the 64 bit
+ * fingerprint of every ID is kept, in a table of longs sized for that number, so load runs of
+ * millions of messages can be checked for reused IDs in a fraction of the memory. Two different
+ * IDs share a fingerprint with a negligible probability, which would report a new ID as reused.
+ */
+object IdRegistry {
+    private val defaultExpectedIds = java.lang.Long.getLong(ID_REGISTRY_SIZE, 0L)
+
+    private var ids = newIds(defaultExpectedIds)
+
+    /**
+     * Remembers {@param id}.
+     *
+     * @return true if {@param id} wasn't seen before
+     */
+    fun add(id: String): Boolean {
+        return synchronized(this) { ids.add(id) }
+    }
+
+    /**
+     * Forgets every ID seen so far.
+     *
+     * @param expectedIds - The number of IDs expected until the next reset. Only fingerprints are
+     * kept if it's positive.
+     */
+    fun reset(expectedIds: Long = defaultExpectedIds) {
+        synchronized(this) { ids = newIds(expectedIds) }
+    }
+
+    private fun newIds(expectedIds: Long): Ids {
+        return if (expectedIds > 0) FingerprintIds(expectedIds) else ExactIds()
+    }
+
+    private interface Ids {
+        fun add(id: String): Boolean
+    }
+
+    private class ExactIds : Ids {
+        private val ids = HashSet<String>()
+
+        override fun add(id: String) = ids.add(id)
+    }
+
+    private class FingerprintIds(expectedIds: Long) : Ids {
+        private val fingerprints = LongSet(expectedIds)
+
+        override fun add(id: String) =
+                fingerprints.add(Hashing.murmur3_128().hashString(id, UTF_8).asLong())
+    }
+
+    /** An open addressing hash set of longs, which doesn't box its values. */
+    private class LongSet(expectedSize: Long) {
+        private var values = LongArray(capacityFor(expectedSize))
+        private var hasZero = false
+        private var size = 0
+
+        fun add(value: Long): Boolean {
+            if (value == 0L) {
+                val added = !hasZero
+                hasZero = true
+                return added
+            }
+            val added = insert(values, value)
+            if (added && ++size * 2 > values.size) grow()
+            return added
+        }
+
+        private fun grow() {
+            check(values.size < MAX_CAPACITY) {
+                "The ID registry can't hold more than ${MAX_CAPACITY / 2} IDs."
+            }
+            val grown = LongArray(values.size * 2)
+            for (value in values) {
+                if (value != 0L) insert(grown, value)
+            }
+            values = grown
+        }
+
+        companion object {
+            /** The largest power of two an array can be sized to */
+            private const val MAX_CAPACITY = 1 shl 30
+            private const val MIN_CAPACITY = 16
+
+            private fun capacityFor(expectedSize: Long): Int {
+                val capacity = java.lang.Long.highestOneBit(
+                        expectedSize.coerceIn(1L, MAX_CAPACITY / 2L) * 2 - 1) * 2
+                return capacity.toInt().coerceAtLeast(MIN_CAPACITY)
+            }
+
+            /** Linear probing, 0 marks an empty slot */
+            private fun insert(table: LongArray, value: Long): Boolean {
+                val mask = table.size - 1
+                var slot = (value xor (value ushr 32)).toInt() and mask
+                while (table[slot] != 0L) {
+                    if (table[slot] == value) return false
+                    slot = (slot + 1) and mask
+                }
+                table[slot] = value
+                return true
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@
 import org.codice.compliance.SAMLCore_3_4_1_1_a
 import org.codice.compliance.SAMLCore_3_4_1_1_b
 import org.codice.compliance.attributeText
+import org.codice.compliance.childSequence
 import org.codice.compliance.children
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
@@ -70,14 +71,14 @@ internal fun verifyEncryptedIds() {
             val subjects = samlResponseDom.recursiveChildren(ASSERTION)
                     .flatMap { it.children(SUBJECT) }
 
-            if (subjects.any { it.children("EncryptedID").isEmpty() }) {
+            if (subjects.any { it.childSequence("EncryptedID").none() }) {
                 Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_3_4_1_1_a,
                         message = "An Assertion element was found without an EncryptedID element" +
                                 " in its Subject element.",
                         node = samlResponseDom))
             }
 
-            if (subjects.any { it.children("NameID").isNotEmpty() }) {
+            if (subjects.any { it.childSequence("NameID").any() }) {
                 Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_3_4_1_1_a,
                         message = "An Assertion element was found with a NameID element in " +
                                 "its Subject element.",
@@ -6,6 +6,21 @@
 */
 package org.codice.compliance.verification.core
 
+import org.codice.compliance.SAMLCore_2_3_3_b
+import org.codice.compliance.SAMLCore_2_3_3_c
+import org.codice.compliance.SAMLCore_2_3_3_d
+import org.codice.compliance.SAMLCore_2_3_3_e
+import org.codice.compliance.SAMLCore_2_4_1_2_a
+import org.codice.compliance.SAMLCore_2_5_1_2_a
+import org.codice.compliance.SAMLCore_2_5_1_5_a
+import org.codice.compliance.SAMLCore_2_5_1_6_a
+import org.codice.compliance.SAMLCore_2_5_1_6_b
+import org.codice.compliance.SAMLCore_2_5_1_a
+import org.codice.compliance.SAMLCore_2_5_1_b
+import org.codice.compliance.SAMLCore_2_5_1_c
+import org.codice.compliance.SAMLCore_2_7_2_a
+import org.codice.compliance.SAMLCore_2_7_3_a
+import org.codice.compliance.SAMLCore_2_7_4_a
 import org.codice.compliance.verification.core.assertions.AssertionsVerifier
 import org.codice.compliance.verification.core.assertions.ConditionsVerifier
 import org.codice.compliance.verification.core.assertions.NameIdentifierVerifier
@@ -14,6 +29,14 @@
 import org.w3c.dom.Node
 
 class SamlAssertionsVerifier(val node: Node) {
+    companion object {
+        // The values of the assertions' elements are common data types as well
+        internal val CODES = CommonDataTypeVerifier.CODES + listOf(SAMLCore_2_3_3_b,
+                SAMLCore_2_3_3_c, SAMLCore_2_3_3_d, SAMLCore_2_3_3_e, SAMLCore_2_4_1_2_a,
+                SAMLCore_2_5_1_a, SAMLCore_2_5_1_b, SAMLCore_2_5_1_c, SAMLCore_2_5_1_2_a,
+                SAMLCore_2_5_1_5_a, SAMLCore_2_5_1_6_a, SAMLCore_2_5_1_6_b, SAMLCore_2_7_2_a,
+                SAMLCore_2_7_3_a, SAMLCore_2_7_4_a)
+    }
 
     /** 2 SAML Assertions */
     fun verify() {
@@ -8,6 +8,7 @@
 
 import org.codice.compliance.Common.Companion.idpMetadataObject
 import org.codice.compliance.SAMLComplianceException
+import org.codice.compliance.SAMLCore_1_3_4_a
 import org.codice.compliance.SAMLCore_8_2_2_a
 import org.codice.compliance.SAMLCore_8_2_3_a
 import org.codice.compliance.SAMLCore_8_3_2_a
@@ -20,7 +21,7 @@
 import org.codice.compliance.SAMLCore_8_3_8_a
 import org.codice.compliance.attributeNode
 import org.codice.compliance.attributeText
-import org.codice.compliance.recursiveChildren
+import org.codice.compliance.recursiveChildrenWithAttribute
 import org.codice.compliance.report.Report
 import org.codice.compliance.Section.CORE_8_2
 import org.codice.compliance.Section.CORE_8_3
@@ -42,6 +43,11 @@ internal class SamlDefinedIdentifiersVerifier(val node: Node) {
         internal const val ENTITY_ID_MAX_LEN = 1024
         internal const val ID_VALUE_LENGTH_LIMIT = 256
 
+        // Transient identifiers are verified as IDs too
+        internal val CODES = listOf(SAMLCore_1_3_4_a, SAMLCore_8_2_2_a, SAMLCore_8_2_3_a,
+                SAMLCore_8_3_2_a, SAMLCore_8_3_6_a, SAMLCore_8_3_6_b, SAMLCore_8_3_7_a,
+                SAMLCore_8_3_7_b, SAMLCore_8_3_7_c, SAMLCore_8_3_7_d, SAMLCore_8_3_8_a)
+
         internal const val ATTRIBUTE_NAME_FORMAT_UNSPECIFIED =
                 "urn:oasis:names:tc:SAML:2.0:attrname-format:unspecified"
         internal const val ATTRIBUTE_NAME_FORMAT_URI =
@@ -66,23 +72,53 @@ internal class SamlDefinedIdentifiersVerifier(val node: Node) {
 
     /** 8 SAML-Defined Identifiers */
     fun verify() {
-        CORE_8_2.start()
-        verifyAttributeNameFormatIdentifiers()
-
-        CORE_8_3.start()
         // Disabled email verification since it's not a requirement.
         // Should be re-enabled once the CTK supports categorization of tests.
         // verifyEmailAddressIdentifier()
-        verifyPersistentIdentifiers()
-        verifyTransientIdentifiers()
-        verifyEntityIdentifiers()
+        VerificationWalker(Visitor()).walk(node)
+    }
+
+    /** 8.3.2 Email Address */
+    private fun verifyEmailAddressIdentifier() {
+        node.recursiveChildrenWithAttribute(FORMAT)
+                .filter { it.attributeText(FORMAT) == NAME_ID_FORMAT_EMAIL }
+                .forEach {
+                    if (!it.textContent.matches(EMAIL_REGEX.toRegex())) {
+                        Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_2_a,
+                                message = "The content [${it.textContent}] of the Identifier " +
+                                        "[${it.localName}] was not in the format specified by " +
+                                        "the Format attribute [$NAME_ID_FORMAT_EMAIL]",
+                                node = it))
+                    }
+                }
     }
 
-    /** 8.2 URI/Basic name attribute formats */
-    private fun verifyAttributeNameFormatIdentifiers() {
-        node.recursiveChildren("Attribute").forEach {
-            val name = it.attributeText("Name") ?: return
-            val nameFormatText = it.attributeText("NameFormat") ?: return
+    /** 8 SAML-Defined Identifiers */
+    internal class Visitor : ElementVisitor {
+        override val elementNames = setOf("Attribute")
+        override val attributeNames = setOf(FORMAT)
+
+        private lateinit var root: Node
+
+        override fun start(root: Node) {
+            this.root = root
+            CORE_8_2.start()
+            CORE_8_3.start()
+        }
+
+        override fun visit(element: Node) {
+            if (element.localName == "Attribute") verifyAttributeNameFormatIdentifier(element)
+            when (element.attributeText(FORMAT)) {
+                PERSISTENT_ID -> verifyPersistentIdentifier(element)
+                TRANSIENT_ID -> verifyTransientIdentifier(element)
+                ENTITY -> verifyEntityIdentifier(element)
+            }
+        }
+
+        /** 8.2 URI/Basic name attribute formats */
+        private fun verifyAttributeNameFormatIdentifier(attribute: Node) {
+            val name = attribute.attributeText("Name") ?: return
+            val nameFormatText = attribute.attributeText("NameFormat") ?: return
 
             when (nameFormatText) {
                 ATTRIBUTE_NAME_FORMAT_URI -> {
@@ -92,7 +128,7 @@ private fun verifyAttributeNameFormatIdentifiers() {
                         Report.addExceptionMessage(SAMLComplianceException.create(
                                 SAMLCore_8_2_2_a,
                                 message = "Attribute name does not match its declared format",
-                                node = node))
+                                node = root))
                     }
                 }
                 ATTRIBUTE_NAME_FORMAT_BASIC -> {
@@ -105,103 +141,75 @@ private fun verifyAttributeNameFormatIdentifiers() {
                         Report.addExceptionMessage(SAMLComplianceException.create(
                                 SAMLCore_8_2_3_a,
                                 message = "Attribute name does not match its declared format",
-                                node = node))
+                                node = root))
                     }
                 }
             }
         }
-    }
-
-    /** 8.3.2 Email Address */
-    private fun verifyEmailAddressIdentifier() {
-        node.recursiveChildren()
-                .filter { it.attributeText("Format") == NAME_ID_FORMAT_EMAIL }
-                .forEach {
-                    if (!it.textContent.matches(EMAIL_REGEX.toRegex())) {
-                        Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_2_a,
-                                message = "The content [${it.textContent}] of the Identifier " +
-                                        "[${it.localName}] was not in the format specified by " +
-                                        "the Format attribute [$NAME_ID_FORMAT_EMAIL]",
-                                node = it))
-                    }
-                }
-    }
-
-    /** 8.3.6 Entity Identifier */
-    private fun verifyEntityIdentifiers() {
-        node.recursiveChildren().filter { it.attributeText(FORMAT) == ENTITY }
-                .forEach { checkEntityIdentifier(it) }
-    }
 
-    private fun checkEntityIdentifier(node: Node) {
-        if (node.attributeNode("NameQualifier") != null ||
-                node.attributeNode(SP_NAME_QUALIFIER) != null ||
-                node.attributeNode("SPProvidedID") != null) {
-            Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_6_a,
-                    message = "Entity Identifier included a disallowed attribute.",
-                    node = node))
-        }
-        node.textContent?.let {
-            if (it.length > ENTITY_ID_MAX_LEN) {
-                Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_6_b,
-                        message = "Length of URI [$it] is [${it.length}]",
+        /** 8.3.6 Entity Identifier */
+        private fun verifyEntityIdentifier(node: Node) {
+            if (node.attributeNode("NameQualifier") != null ||
+                    node.attributeNode(SP_NAME_QUALIFIER) != null ||
+                    node.attributeNode("SPProvidedID") != null) {
+                Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_6_a,
+                        message = "Entity Identifier included a disallowed attribute.",
                         node = node))
             }
+            node.textContent?.let {
+                if (it.length > ENTITY_ID_MAX_LEN) {
+                    Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_6_b,
+                            message = "Length of URI [$it] is [${it.length}]",
+                            node = node))
+                }
+            }
         }
-    }
 
-    /** 8.3.7 Persistent Identifier */
-    private fun verifyPersistentIdentifiers() {
-        node.recursiveChildren()
-                .filter { it.attributeText(FORMAT) == PERSISTENT_ID }
-                .forEach {
-                    if (it.textContent != null && it.textContent.length > ID_VALUE_LENGTH_LIMIT) {
-                        Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_7_a,
-                                message = "The length of the Persistent ID's value " +
-                                        "[${it.textContent.length}] was greater than " +
-                                        "$ID_VALUE_LENGTH_LIMIT characters.",
-                                node = it))
-                    }
+        /** 8.3.7 Persistent Identifier */
+        private fun verifyPersistentIdentifier(node: Node) {
+            if (node.textContent != null && node.textContent.length > ID_VALUE_LENGTH_LIMIT) {
+                Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_7_a,
+                        message = "The length of the Persistent ID's value " +
+                                "[${node.textContent.length}] was greater than " +
+                                "$ID_VALUE_LENGTH_LIMIT characters.",
+                        node = node))
+            }
 
-                    it.attributeText("NameQualifier")?.let { nameQualifier ->
-                        if (nameQualifier != idpMetadataObject.entityId) {
-                            Report.addExceptionMessage(SAMLComplianceException.create(
-                                    SAMLCore_8_3_7_b,
-                                    SAMLCore_8_3_7_c,
-                                    message = "The Persistent ID's NameQualifier " +
-                                            "[$nameQualifier] is not equal to " +
-                                            idpMetadataObject.entityId,
-                                    node = it))
-                        }
-                    }
+            node.attributeText("NameQualifier")?.let { nameQualifier ->
+                if (nameQualifier != idpMetadataObject.entityId) {
+                    Report.addExceptionMessage(SAMLComplianceException.create(
+                            SAMLCore_8_3_7_b,
+                            SAMLCore_8_3_7_c,
+                            message = "The Persistent ID's NameQualifier " +
+                                    "[$nameQualifier] is not equal to " +
+                                    idpMetadataObject.entityId,
+                            node = node))
+                }
+            }
 
-                    it.attributeText(SP_NAME_QUALIFIER)?.let { spNameQualifier ->
-                        if (spNameQualifier != currentSPIssuer) {
-                            Report.addExceptionMessage(SAMLComplianceException.create(
-                                    SAMLCore_8_3_7_d,
-                                    message = "The Persistent ID's SPNameQualifier  " +
-                                            "[$spNameQualifier]isn't equal to $currentSPIssuer",
-                                    node = it))
-                        }
-                    }
+            node.attributeText(SP_NAME_QUALIFIER)?.let { spNameQualifier ->
+                if (spNameQualifier != currentSPIssuer) {
+                    Report.addExceptionMessage(SAMLComplianceException.create(
+                            SAMLCore_8_3_7_d,
+                            message = "The Persistent ID's SPNameQualifier  " +
+                                    "[$spNameQualifier]isn't equal to $currentSPIssuer",
+                            node = node))
                 }
-    }
+            }
+        }
 
-    /** 8.3.8 Transient Identifier */
-    private fun verifyTransientIdentifiers() {
-        node.recursiveChildren()
-                .filter { it.attributeText(FORMAT) == TRANSIENT_ID }
-                .filter { it.textContent != null }
-                .forEach {
-                    if (it.textContent.length > ID_VALUE_LENGTH_LIMIT) {
-                        Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_8_a,
-                                message = "The length of the Transient ID's value " +
-                                        "[${it.textContent.length}]was greater than " +
-                                        "$ID_VALUE_LENGTH_LIMIT characters.",
-                                node = it))
-                    }
+        /** 8.3.8 Transient Identifier */
+        private fun verifyTransientIdentifier(node: Node) {
+            if (node.textContent == null) return
+            if (node.textContent.length > ID_VALUE_LENGTH_LIMIT) {
+                Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_8_3_8_a,
+                        message = "The length of the Transient ID's value " +
+                                "[${node.textContent.length}]was greater than " +
+                                "$ID_VALUE_LENGTH_LIMIT characters.",
+                        node = node))
+            }
 
-                    CommonDataTypeVerifier.verifyIdValue(it, SAMLCore_8_3_8_a)
-                }
+            CommonDataTypeVerifier.verifyIdValue(node, SAMLCore_8_3_8_a)
+        }
     }
 }
@@ -16,7 +16,6 @@
 import org.codice.compliance.SAMLCore_4_2_a
 import org.codice.compliance.SAMLSpecRefMessage
 import org.codice.compliance.attributeNode
-import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
 import org.codice.compliance.Section.CORE_4_1
 import org.codice.compliance.Section.CORE_4_2
@@ -29,71 +28,104 @@
 class SamlVersioningVerifier(private val samlResponseDom: Node) {
     companion object {
         private const val EXPECTED_MAJOR_VERSION = 2
+
+        internal val CODES = listOf(SAMLCore_2_3_3_a, SAMLCore_3_2_2_c, SAMLCore_4_1_2_a,
+                SAMLCore_4_1_3_2_a, SAMLCore_4_1_3_2_b, SAMLCore_4_1_3_3_a, SAMLCore_4_2_a)
     }
 
     /** 4 SAML Versioning */
     fun verify() {
-        CORE_4_1.start()
-        verifySetVersioning()
-        verifyAssertionVersioning()
-
-        CORE_4_2.start()
-        verifyNamespaceVersioning()
+        VerificationWalker(Visitor()).walk(samlResponseDom)
     }
 
-    /** 4.1 SAML Specification Set Version
+    /**
+     * 4 SAML Versioning
      * Note: the version is already verified by the
      * {@link org.codice.compliance.verification.core.CommonDataTypeVerifier}
-     **/
-    private fun verifySetVersioning() {
-        val version = samlResponseDom.attributeNode(VERSION)
-        if (version == null || version.textContent.isBlank()) {
-            CORE_4_1.skip()
-            return
+     */
+    internal class Visitor : ElementVisitor {
+        // Every element's namespace is checked
+        override val visitsAllElements = true
+
+        private var hasOtherNamespaceVersion = false
+
+        override fun start(root: Node) {
+            CORE_4_1.start()
+            verifySetVersioning(root)
+            hasOtherNamespaceVersion =
+                    root.namespaceURI?.contains(SAMLVersion.VERSION_20.toString()) != true
         }
 
-        if (version.textContent != SAMLVersion.VERSION_20.toString()) {
-            try {
-                val responseMajorVersion = version.textContent.split(".").first().toInt()
-                val codes = mutableListOf<SAMLSpecRefMessage>(SAMLCore_3_2_2_c, SAMLCore_4_1_3_3_a)
+        override fun visit(element: Node) {
+            if (element.localName == ASSERTION) verifyAssertionVersioning(element)
 
-                if (responseMajorVersion < EXPECTED_MAJOR_VERSION) {
-                    codes.add(SAMLCore_4_1_3_2_a)
-                }
-                if (responseMajorVersion > EXPECTED_MAJOR_VERSION) {
-                    codes.add(SAMLCore_4_1_3_2_b)
-                }
+            val namespaceUri = element.namespaceURI
+            if (namespaceUri != null && namespaceUri.contains("SAML") &&
+                    !namespaceUri.contains(SAMLVersion.VERSION_20.toString())) {
+                hasOtherNamespaceVersion = true
+            }
+        }
 
-                Report.addExceptionMessage(SAMLComplianceException.createWithPropertyMessage(
-                        SAMLCore_3_2_2_c,
-                        property = VERSION,
-                        actual = version.textContent,
-                        expected = SAMLVersion.VERSION_20.toString(),
-                        node = samlResponseDom))
+        /** 4.2 SAML Namespace Version **/
+        override fun finish(root: Node) {
+            CORE_4_2.start()
+            if (hasOtherNamespaceVersion) {
+                Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_4_2_a,
+                        message = "A namespace URI with an incorrect version was found.",
+                        node = root))
+            }
+        }
 
-                Report.addExceptionMessage(SAMLComplianceException.createWithPropertyMessage(codes,
-                        property = VERSION,
-                        actual = version.textContent,
-                        expected = SAMLVersion.VERSION_20.toString(),
-                        node = samlResponseDom), CORE_4_1)
-            } catch (e: NumberFormatException) {
+        /** 4.1 SAML Specification Set Version **/
+        private fun verifySetVersioning(root: Node) {
+            val version = root.attributeNode(VERSION)
+            if (version == null || version.textContent.isBlank()) {
                 CORE_4_1.skip()
                 return
             }
+
+            if (version.textContent != SAMLVersion.VERSION_20.toString()) {
+                try {
+                    val responseMajorVersion = version.textContent.split(".").first().toInt()
+                    val codes =
+                            mutableListOf<SAMLSpecRefMessage>(SAMLCore_3_2_2_c, SAMLCore_4_1_3_3_a)
+
+                    if (responseMajorVersion < EXPECTED_MAJOR_VERSION) {
+                        codes.add(SAMLCore_4_1_3_2_a)
+                    }
+                    if (responseMajorVersion > EXPECTED_MAJOR_VERSION) {
+                        codes.add(SAMLCore_4_1_3_2_b)
+                    }
+
+                    Report.addExceptionMessage(SAMLComplianceException.createWithPropertyMessage(
+                            SAMLCore_3_2_2_c,
+                            property = VERSION,
+                            actual = version.textContent,
+                            expected = SAMLVersion.VERSION_20.toString(),
+                            node = root))
+
+                    Report.addExceptionMessage(SAMLComplianceException.createWithPropertyMessage(
+                            codes,
+                            property = VERSION,
+                            actual = version.textContent,
+                            expected = SAMLVersion.VERSION_20.toString(),
+                            node = root), CORE_4_1)
+                } catch (e: NumberFormatException) {
+                    CORE_4_1.skip()
+                }
+            }
         }
-    }
 
-    /** 4.1.2 SAML Assertion Version **/
-    private fun verifyAssertionVersioning() {
-        samlResponseDom.recursiveChildren(ASSERTION).forEach {
-            val version = it.attributeNode(VERSION)
+        /** 4.1.2 SAML Assertion Version **/
+        private fun verifyAssertionVersioning(assertion: Node) {
+            val version = assertion.attributeNode(VERSION)
             if (version?.textContent != SAMLVersion.VERSION_20.toString()) {
                 Report.addExceptionMessage(
                         SAMLComplianceException.createWithPropertyMessage(SAMLCore_2_3_3_a,
                                 property = VERSION,
                                 actual = version?.textContent,
                                 expected = SAMLVersion.VERSION_20.toString(),
-                                node = it))
+                                node = assertion))
 
                 Report.addExceptionMessage(SAMLComplianceException.createWithPropertyMessage(
                         SAMLCore_4_1_2_a,
@@ -101,21 +133,8 @@ private fun verifyAssertionVersioning() {
                         property = VERSION,
                         actual = version?.textContent,
                         expected = SAMLVersion.VERSION_20.toString(),
-                        node = it), CORE_4_1)
+                        node = assertion), CORE_4_1)
             }
         }
     }
-
-    /** 4.2 SAML Namespace Version **/
-    @Suppress("ComplexCondition")
-    private fun verifyNamespaceVersioning() {
-        if (samlResponseDom.namespaceURI?.contains(SAMLVersion.VERSION_20.toString()) != true ||
-                samlResponseDom.recursiveChildren()
-                        .filter { it.namespaceURI != null && it.namespaceURI.contains("SAML") }
-                        .any { !it.namespaceURI.contains(SAMLVersion.VERSION_20.toString()) }) {
-            Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_4_2_a,
-                    message = "A namespace URI with an incorrect version was found.",
-                    node = samlResponseDom))
-        }
-    }
 }
@@ -17,40 +17,53 @@
 import org.w3c.dom.Node
 
 class SignatureSyntaxAndProcessingVerifier(private val node: Node) {
+    companion object {
+        internal val CODES = listOf(SAMLCore_5_4_2_a)
+    }
 
     /** 5 SAML and XML Signature Syntax and Processing */
     fun verify() {
-        CORE_5_4.start()
-        verifySignatureSyntaxAndProcessing()
+        VerificationWalker(Visitor()).walk(node)
     }
 
-    /** 5.4.2 References */
-    private fun verifySignatureSyntaxAndProcessing() {
-        node.recursiveChildren(SSOConstants.SIGNATURE).forEach {
-            val references = it.recursiveChildren("Reference")
+    /** 5 SAML and XML Signature Syntax and Processing */
+    internal class Visitor : ElementVisitor {
+        override val elementNames = setOf(SSOConstants.SIGNATURE)
+
+        private lateinit var root: Node
+
+        override fun start(root: Node) {
+            this.root = root
+            CORE_5_4.start()
+        }
+
+        /** 5.4.2 References */
+        override fun visit(element: Node) {
+            val references = element.recursiveChildren("Reference")
             if (references.size != 1) {
                 Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_5_4_2_a,
                         message = "A signature needs to have exactly one Reference, " +
                                 "${references.size} found.",
-                        node = node))
+                        node = root))
+                if (references.isEmpty()) return
             }
 
-            val uriValue = references[0].attributeText("URI")
+            val uriValue = references.firstOrNull()?.attributeText("URI")
             if (uriValue == null) {
                 Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_5_4_2_a,
                         message = "URI attribute not found.",
-                        node = node))
+                        node = root))
                 return
             }
 
-            val formattedId = "#${it.parentNode.attributeText(ID)}"
+            val formattedId = "#${element.parentNode.attributeText(ID)}"
             if (uriValue != formattedId) {
                 Report.addExceptionMessage(SAMLComplianceException.createWithPropertyMessage(
                         SAMLCore_5_4_2_a,
                         property = "URI",
                         actual = uriValue,
                         expected = formattedId,
-                        node = node))
+                        node = root))
             }
         }
     }
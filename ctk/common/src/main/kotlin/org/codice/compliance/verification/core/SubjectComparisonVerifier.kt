@@ -18,7 +18,9 @@
 import org.codice.compliance.Section.PROFILES_4_4
 import org.codice.compliance.attributeList
 import org.codice.compliance.attributeText
+import org.codice.compliance.childSequence
 import org.codice.compliance.children
+import org.codice.compliance.recursiveChildSequence
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
 import org.codice.compliance.utils.ASSERTION
@@ -93,8 +95,8 @@ private fun verifyIdContentsMatch(id1: Node, id2: Node, samlCode: SAMLSpecRefMes
      */
     fun verifyIdsMatchSLO(logoutRequest: Node) {
         val assertionId =
-                samlResponseDom.recursiveChildren(ASSERTION).firstOrNull()?.children(SUBJECT)
-                        ?.firstOrNull()?.id
+                samlResponseDom.recursiveChildSequence(ASSERTION).firstOrNull()
+                        ?.childSequence(SUBJECT)?.firstOrNull()?.id
 
         if (assertionId == null) {
             Report.addExceptionMessage(SAMLComplianceException.create(SAMLGeneral_f,
@@ -105,7 +107,7 @@ fun verifyIdsMatchSLO(logoutRequest: Node) {
             return
         }
 
-        val logoutRequestId = logoutRequest.children().firstOrNull {
+        val logoutRequestId = logoutRequest.childSequence().firstOrNull {
             it.localName == NAME_ID || it.localName == BASE_ID
         }
 
@@ -136,14 +138,14 @@ fun verifyIdsMatchSLO(logoutRequest: Node) {
      */
     @Suppress("NestedBlockDepth" /* Simple `let` nesting */)
     fun verifySubjectsMatchAuthnRequest(authnRequest: AuthnRequest) {
-        val requestSubject = authnRequest.dom?.children(SUBJECT)?.firstOrNull() ?: return
+        val requestSubject = authnRequest.dom?.childSequence(SUBJECT)?.firstOrNull() ?: return
         val requestId = requestSubject.id
         val requestConfirmations = requestSubject.children(SUBJECT_CONFIRMATION)
 
         if (requestId == null && requestConfirmations.isEmpty()) return
 
         val nameIdPolicyFormat =
-                authnRequest.dom?.children("NameIDPolicy")?.firstOrNull()?.filteredFormatValue
+                authnRequest.dom?.childSequence("NameIDPolicy")?.firstOrNull()?.filteredFormatValue
 
         samlResponseDom.recursiveChildren(ASSERTION)
                 .flatMap { it.children(SUBJECT) }
@@ -268,5 +270,5 @@ private fun verifyConfirmationsMatchAuthnRequest(
      * that isn't a SubjectConfirmation element.
      */
     private val Node.id: Node?
-        get() = this.children().firstOrNull { it.localName != SUBJECT_CONFIRMATION }
+        get() = this.childSequence().firstOrNull { it.localName != SUBJECT_CONFIRMATION }
 }
@@ -0,0 +1,51 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.verification.core
+
+import org.codice.compliance.recursiveChildSequence
+import org.w3c.dom.Node
+
+/**
+ * Walks a message once and dispatches each of its elements to the [ElementVisitor]s interested in
+ * it. The cost of verifying a message is one traversal no matter how many visitors there are.
+ *
+ * Elements are visited in the order of [recursiveChildren]. For each element the visitors are
+ * called in the order they were given.
+ *
+ * @param visitors - The verifiers to run
+ */
+internal class VerificationWalker(private val visitors: List<ElementVisitor>) {
+
+    constructor(vararg visitors: ElementVisitor) : this(visitors.toList())
+
+    fun walk(root: Node) {
+        visitors.forEach { it.start(root) }
+
+        root.recursiveChildSequence()
+                .filter { it.nodeType == Node.ELEMENT_NODE }
+                .forEach { element ->
+                    visitors.filter { it.isInterestedIn(element) }
+                            .forEach { it.visit(element) }
+                }
+
+        visitors.forEach { it.finish(root) }
+    }
+
+    private fun ElementVisitor.isInterestedIn(element: Node): Boolean {
+        return visitsAllElements ||
+                element.localName in elementNames ||
+                element.hasAnyAttribute(attributeNames)
+    }
+
+    private fun Node.hasAnyAttribute(names: Set<String>): Boolean {
+        val attributes = attributes
+        return names.isNotEmpty() && attributes != null && (0 until attributes.length).any {
+            val attribute = attributes.item(it)
+            (attribute.localName ?: attribute.nodeName) in names
+        }
+    }
+}
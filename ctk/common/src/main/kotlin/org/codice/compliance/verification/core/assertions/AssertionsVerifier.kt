@@ -13,6 +13,7 @@
 import org.codice.compliance.SAMLCore_2_3_3_e
 import org.codice.compliance.attributeNode
 import org.codice.compliance.attributeNodeNS
+import org.codice.compliance.childSequence
 import org.codice.compliance.children
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
@@ -59,10 +60,10 @@ private fun verifyAssertion() {
             }
 
             if (statements.isEmpty() &&
-                    it.children(AUTHN_STATEMENT).isEmpty() &&
-                    it.children("AuthzDecisionStatement").isEmpty() &&
-                    it.children("AttributeStatement").isEmpty() &&
-                    it.children(SUBJECT).isEmpty()) {
+                    it.childSequence(AUTHN_STATEMENT).none() &&
+                    it.childSequence("AuthzDecisionStatement").none() &&
+                    it.childSequence("AttributeStatement").none() &&
+                    it.childSequence(SUBJECT).none()) {
                 Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_2_3_3_e,
                         message = "No Subject or Statement elements found.",
                         node = node))
@@ -15,6 +15,7 @@
 import org.codice.compliance.SAMLCore_2_5_1_b
 import org.codice.compliance.SAMLCore_2_5_1_c
 import org.codice.compliance.attributeNodeNS
+import org.codice.compliance.childSequence
 import org.codice.compliance.children
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
@@ -71,7 +72,7 @@ private fun verifyConditions(conditionsElement: Node) {
     /** 2.5.1.4 Elements <AudienceRestriction> and <Audience> */
     private fun verifyAudience(conditionsElement: Node) {
         conditionsElement.children("AudienceRestriction")
-                .filter { it.children(AUDIENCE).isNotEmpty() }
+                .filter { it.childSequence(AUDIENCE).any() }
                 .flatMap { it.children(AUDIENCE) }
                 .forEach { CommonDataTypeVerifier.verifyUriValue(it) }
     }
@@ -79,7 +80,7 @@ private fun verifyAudience(conditionsElement: Node) {
     /** 2.5.1.6 Element <ProxyRestriction> */
     private fun verifyProxyRestrictions(conditionsElement: Node) {
         val proxyRestrictionAudiences = conditionsElement.children("ProxyRestriction")
-                .filter { it.children(AUDIENCE).isNotEmpty() }
+                .filter { it.childSequence(AUDIENCE).any() }
                 .flatMap { it.children(AUDIENCE) }
                 .map { it.textContent }
                 .toList()
@@ -104,7 +105,8 @@ private fun verifyProxyRestrictions(conditionsElement: Node) {
                         node = node))
             }
 
-            if (it.children(AUDIENCE).any { !proxyRestrictionAudiences.contains(it.textContent) }) {
+            if (it.childSequence(AUDIENCE)
+                            .any { !proxyRestrictionAudiences.contains(it.textContent) }) {
                 Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_2_5_1_6_a,
                         message = "The AudienceRestriction can only have Audience elements " +
                                 "that are also in the ProxyRestriction element.",
@@ -11,7 +11,7 @@
 import org.codice.compliance.SAMLCore_2_7_3_a
 import org.codice.compliance.SAMLCore_2_7_4_a
 import org.codice.compliance.attributeNode
-import org.codice.compliance.children
+import org.codice.compliance.childSequence
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
 import org.codice.compliance.Section.CORE_2_7
@@ -51,8 +51,8 @@ private fun verifyAuthnStatement() {
         }
 
         if (node.recursiveChildren(ASSERTION)
-                        .filter { it.children(AUTHN_STATEMENT).isNotEmpty() }
-                        .any { it.children(SUBJECT).isEmpty() }) {
+                        .filter { it.childSequence(AUTHN_STATEMENT).any() }
+                        .any { it.childSequence(SUBJECT).none() }) {
             Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_2_7_2_a,
                     message = "An AuthnStatement was found without a Subject element.",
                     node = node))
@@ -93,8 +93,8 @@ private fun verifyAuthnContext() {
     /** 2.7.3 Element <AttributeStatement> **/
     private fun verifyAttributeStatement() {
         if (node.recursiveChildren(ASSERTION)
-                        .filter { it.children("AttributeStatement").isNotEmpty() }
-                        .any { it.children(SUBJECT).isEmpty() }) {
+                        .filter { it.childSequence("AttributeStatement").any() }
+                        .any { it.childSequence(SUBJECT).none() }) {
             Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_2_7_3_a,
                     message = "An AttributeStatement was found without a Subject element.",
                     node = node))
@@ -120,8 +120,8 @@ private fun verifyAttribute() {
     private fun verifyAuthzDecisionStatement() {
         if (node.recursiveChildren(ASSERTION)
                         .any {
-                            it.children("AuthzDecisionStatement").isNotEmpty() &&
-                                    it.children(SUBJECT).isEmpty()
+                            it.childSequence("AuthzDecisionStatement").any() &&
+                                    it.childSequence(SUBJECT).none()
                         }) {
             Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_2_7_4_a,
                     message = "No Subject element found.",
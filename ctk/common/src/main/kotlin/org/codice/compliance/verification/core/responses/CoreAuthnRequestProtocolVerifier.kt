@@ -9,7 +9,12 @@
 import io.restassured.response.Response
 import org.codice.compliance.SAMLComplianceException
 import org.codice.compliance.SAMLCore_3_3_2_2_1_a
+import org.codice.compliance.SAMLCore_3_3_4_b
+import org.codice.compliance.SAMLCore_3_3_4_c
+import org.codice.compliance.SAMLCore_3_4_1_1_a
+import org.codice.compliance.SAMLCore_3_4_1_1_b
 import org.codice.compliance.SAMLCore_3_4_1_4_a
+import org.codice.compliance.SAMLCore_3_4_1_4_b
 import org.codice.compliance.SAMLCore_3_4_1_4_c
 import org.codice.compliance.SAMLCore_3_4_1_4_d
 import org.codice.compliance.SAMLCore_3_4_1_4_e
@@ -17,6 +22,7 @@
 import org.codice.compliance.SAMLCore_3_4_a
 import org.codice.compliance.Section.CORE_3_3_2_2_1
 import org.codice.compliance.Section.CORE_3_4
+import org.codice.compliance.childSequence
 import org.codice.compliance.children
 import org.codice.compliance.recursiveChildren
 import org.codice.compliance.report.Report
@@ -33,6 +39,7 @@
 import org.codice.compliance.verification.core.NameIDPolicyVerifier
 import org.codice.compliance.verification.core.ResponseVerifier
 import org.codice.compliance.verification.core.SubjectComparisonVerifier
+import org.codice.compliance.verification.rules.Rule
 import org.codice.security.saml.SamlProtocol.Binding.HTTP_POST
 import org.opensaml.saml.saml2.core.AuthnRequest
 
@@ -49,12 +56,20 @@ class CoreAuthnRequestProtocolVerifier(
             }
 
     /** 3.4 Authentication Request Protocol **/
-    override fun verify() {
-        super.verify()
-        CORE_3_4.start()
-        verifyAuthnRequestProtocolResponse()
-        verifySubjects()
-        nameIdPolicyVerifier?.verify()
+    override fun rules(): List<Rule> {
+        return listOfNotNull(
+                // Also reports messages that aren't a <Response>
+                Rule("3.4.1.4 Response", listOf(SAMLCore_3_4_1_4_a, SAMLCore_3_4_a,
+                        SAMLCore_3_4_1_4_d, SAMLCore_3_4_1_4_e)) {
+                    CORE_3_4.start()
+                    verifyAuthnRequestProtocolResponse()
+                },
+                Rule("3.4.1.4 Subjects", listOf(SAMLCore_3_4_1_4_c, SAMLCore_3_4_1_4_b,
+                        SAMLCore_3_3_4_b, SAMLCore_3_3_4_c), setOf(RESPONSE)) { verifySubjects() },
+                nameIdPolicyVerifier?.let {
+                    Rule("3.4.1.1 NameIDPolicy", listOf(SAMLCore_3_4_1_1_a, SAMLCore_3_4_1_1_b),
+                            setOf(RESPONSE), it::verify)
+                })
     }
 
     /**
@@ -101,7 +116,7 @@ private fun verifyAuthnRequestProtocolResponse() {
                     node = samlResponse))
         }
 
-        if (assertions.all { it.children(AUTHN_STATEMENT).isEmpty() }) {
+        if (assertions.all { it.childSequence(AUTHN_STATEMENT).none() }) {
             Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_3_4_a,
                     SAMLCore_3_4_1_4_d,
                     message = "AuthnStatement not found in any of the Assertions.",
@@ -126,7 +141,7 @@ override fun verifyEncryptedElements() {
 
     private fun verifySubjects() {
         samlResponse.recursiveChildren(ASSERTION).forEach {
-            if (it.children(SUBJECT).isEmpty())
+            if (it.childSequence(SUBJECT).none())
                 Report.addExceptionMessage(SAMLComplianceException.create(SAMLCore_3_4_1_4_c,
                         message = "One of the Assertions contained no Subject",
                         node = it))
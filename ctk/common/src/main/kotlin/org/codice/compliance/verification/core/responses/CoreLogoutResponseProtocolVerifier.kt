@@ -17,6 +17,7 @@
 import org.codice.compliance.utils.STATUS
 import org.codice.compliance.utils.STATUS_CODE
 import org.codice.compliance.verification.core.ResponseVerifier
+import org.codice.compliance.verification.rules.Rule
 import org.codice.security.saml.SamlProtocol
 import org.opensaml.saml.saml2.core.LogoutRequest
 
@@ -27,10 +28,13 @@ class CoreLogoutResponseProtocolVerifier(
     private val expectedSecondLevelStatusCode: String? = null
 ) : ResponseVerifier(logoutRequest, samlResponse, binding) {
 
-    override fun verify() {
-        super.verify()
-        CORE_3_7.start()
-        verifySecondaryStatusCode()
+    /** 3.7 Single Logout Protocol */
+    override fun rules(): List<Rule> {
+        return listOf(Rule("3.7.3.2 Secondary status code",
+                listOf(SAMLCore_3_7_3_2_b, SAMLCore_3_7_3_2_d)) {
+            CORE_3_7.start()
+            verifySecondaryStatusCode()
+        })
     }
 
     private fun verifySecondaryStatusCode() {
@@ -11,7 +11,7 @@
 import org.codice.compliance.SAMLSpecRefMessage
 import org.codice.compliance.attributeText
 import org.codice.compliance.children
-import org.codice.compliance.recursiveChildren
+import org.codice.compliance.recursiveChildSequence
 import org.codice.compliance.utils.ASSERTION
 import org.codice.compliance.utils.ENTITY
 import org.codice.compliance.utils.FORMAT
@@ -28,7 +28,7 @@ class ProfilesVerifier {
          * This should be called explicitly if an error is expected.
          */
         fun verifyErrorResponseAssertion(node: Node, samlErrorCode: SAMLSpecRefMessage? = null) {
-            if (node.recursiveChildren(ASSERTION).isNotEmpty()) {
+            if (node.recursiveChildSequence(ASSERTION).any()) {
                 val exceptions: Array<SAMLSpecRefMessage> =
                     if (samlErrorCode != null)
                         arrayOf(samlErrorCode, SAMLProfiles_4_1_4_2_j)
@@ -8,31 +8,63 @@
 
 import io.restassured.response.Response
 import org.codice.compliance.SAMLComplianceException
+import org.codice.compliance.SAMLCore_3_3_4_b
 import org.codice.compliance.SAMLProfiles_4_1_2_a
 import org.codice.compliance.SAMLProfiles_4_1_4_2_a
 import org.codice.compliance.SAMLProfiles_4_1_4_2_b
 import org.codice.compliance.SAMLProfiles_4_1_4_2_c
+import org.codice.compliance.SAMLProfiles_4_1_4_2_d
+import org.codice.compliance.SAMLProfiles_4_1_4_2_j
 import org.codice.compliance.children
 import org.codice.compliance.utils.ASSERTION
 import org.codice.compliance.utils.NodeDecorator
+import org.codice.compliance.utils.RESPONSE
+import org.codice.compliance.utils.TestCommon.Companion.REQUEST_ID
 import org.codice.compliance.utils.determineBinding
 import org.codice.compliance.verification.core.SubjectComparisonVerifier
 import org.codice.compliance.verification.profile.ProfilesVerifier.Companion.verifyIssuer
 import org.codice.compliance.verification.profile.subject.confirmations.BearerSubjectConfirmationVerifier
 import org.codice.compliance.verification.profile.subject.confirmations.HolderOfKeySubjectConfirmationVerifier
+import org.codice.compliance.verification.rules.Rule
+import org.codice.compliance.verification.rules.RuleRegistry
 import org.codice.security.saml.SamlProtocol.Binding.HTTP_REDIRECT
 
-class SingleSignOnProfileVerifier(private val response: NodeDecorator) {
+/**
+ * @param requestId - See [BearerSubjectConfirmationVerifier]. Defaults to the ID of the last
+ * request the tests sent.
+ */
+class SingleSignOnProfileVerifier(
+    private val response: NodeDecorator,
+    private val requestId: () -> String? = { REQUEST_ID }
+) {
 
     /** 4.1.4.2 <Response> Usage */
     fun verify() {
-        if (response.isSigned || response.hasEncryptedAssertion)
-            verifyIssuer(response, SAMLProfiles_4_1_4_2_a)
-
-        verifySSOAssertions()
-        SubjectComparisonVerifier(response).verifySubjectsMatchSSO()
-        BearerSubjectConfirmationVerifier(response).verify()
-        HolderOfKeySubjectConfirmationVerifier(response).verify()
+        RuleRegistry.run(response, listOf(
+                Rule("4.1.4.2 Response issuer",
+                        listOf(SAMLProfiles_4_1_4_2_a, SAMLProfiles_4_1_4_2_j)) {
+                    if (response.isSigned || response.hasEncryptedAssertion)
+                        verifyIssuer(response, SAMLProfiles_4_1_4_2_a)
+                },
+                // Also reports messages without assertions
+                Rule("4.1.4.2 Assertions",
+                        listOf(SAMLProfiles_4_1_4_2_b, SAMLProfiles_4_1_4_2_c,
+                                SAMLProfiles_4_1_4_2_j)) {
+                    verifySSOAssertions()
+                },
+                Rule("4.1.4.2 Subjects", listOf(SAMLProfiles_4_1_4_2_d, SAMLCore_3_3_4_b),
+                        setOf(RESPONSE)) {
+                    SubjectComparisonVerifier(response).verifySubjectsMatchSSO()
+                },
+                // Also reports messages without bearer subject confirmations
+                Rule("4.1.4.2 Bearer subject confirmations",
+                        BearerSubjectConfirmationVerifier.CODES) {
+                    BearerSubjectConfirmationVerifier(response, requestId).verify()
+                },
+                Rule("3.1 Holder of key subject confirmations",
+                        HolderOfKeySubjectConfirmationVerifier.CODES, setOf(RESPONSE)) {
+                    HolderOfKeySubjectConfirmationVerifier(response).verify()
+                }))
     }
 
     /** 4.1.2 Profile Overview */
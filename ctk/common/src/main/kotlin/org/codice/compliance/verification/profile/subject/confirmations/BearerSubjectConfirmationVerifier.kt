@@ -14,6 +14,7 @@
 import org.codice.compliance.SAMLProfiles_4_1_4_2_i
 import org.codice.compliance.attributeNode
 import org.codice.compliance.attributeText
+import org.codice.compliance.childSequence
 import org.codice.compliance.children
 import org.codice.compliance.utils.ASSERTION
 import org.codice.compliance.utils.AUDIENCE
@@ -30,14 +31,25 @@
 import org.codice.security.saml.SamlProtocol.Binding.HTTP_POST
 import org.w3c.dom.Node
 
-class BearerSubjectConfirmationVerifier(private val samlResponseDom: Node) {
+/**
+ * @param requestId - Returns the ID of the request the response is in response to, null if the
+ * response is unsolicited
+ */
+class BearerSubjectConfirmationVerifier(
+    private val samlResponseDom: Node,
+    private val requestId: () -> String? = { REQUEST_ID }
+) {
+    companion object {
+        internal val CODES = listOf(SAMLProfiles_4_1_4_2_e, SAMLProfiles_4_1_4_2_f,
+                SAMLProfiles_4_1_4_2_g, SAMLProfiles_4_1_4_2_h, SAMLProfiles_4_1_4_2_i)
+    }
 
     private val bearerSubjectConfirmationPredicate = { node: Node ->
         node.attributeText("Recipient") ==
                 TestCommon.getServiceUrl(HTTP_POST, samlResponseDom) &&
                 node.attributeNode("NotOnOrAfter") != null &&
                 node.attributeNode("NotBefore") == null &&
-                node.attributeText("InResponseTo") == REQUEST_ID
+                node.attributeText("InResponseTo") == requestId()
     }
 
     fun verify() {
@@ -50,9 +62,9 @@ fun verify() {
     private fun verifyBearerSubjectConfirmations(): List<Node> {
         val (bearerSubjectConfirmations, bearerAssertions) =
                 samlResponseDom.children(ASSERTION)
-                        .filter { it.children(SUBJECT).isNotEmpty() }
+                        .filter { it.childSequence(SUBJECT).any() }
                         .flatMap { it.children(SUBJECT) }
-                        .filter { it.children(SUBJECT_CONFIRMATION).isNotEmpty() }
+                        .filter { it.childSequence(SUBJECT_CONFIRMATION).any() }
                         .flatMap { it.children(SUBJECT_CONFIRMATION) }
                         .filter { it.attributeText("Method") == BEARER }
                         .map { it to it.parentNode.parentNode }
@@ -64,7 +76,7 @@ private fun verifyBearerSubjectConfirmations(): List<Node> {
                     node = samlResponseDom)
 
         if (bearerSubjectConfirmations
-                        .filter { it.children(SUBJECT_CONFIRMATION_DATA).isNotEmpty() }
+                        .filter { it.childSequence(SUBJECT_CONFIRMATION_DATA).any() }
                         .flatMap { it.children(SUBJECT_CONFIRMATION_DATA) }
                         .none { bearerSubjectConfirmationPredicate(it) }) {
             throw SAMLComplianceException.create(SAMLProfiles_4_1_4_2_f,
@@ -76,7 +88,7 @@ private fun verifyBearerSubjectConfirmations(): List<Node> {
     }
 
     private fun verifyAuthnStatements(bearerAssertions: List<Node>) {
-        if (bearerAssertions.all { it.children(AUTHN_STATEMENT).isEmpty() })
+        if (bearerAssertions.all { it.childSequence(AUTHN_STATEMENT).none() })
             throw SAMLComplianceException.create(SAMLProfiles_4_1_4_2_g,
                     message = "A Bearer Assertion with an AuthnStatement was not found.",
                     node = samlResponseDom)
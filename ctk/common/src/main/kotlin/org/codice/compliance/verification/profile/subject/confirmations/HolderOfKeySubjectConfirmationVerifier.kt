@@ -25,6 +25,9 @@
 import org.w3c.dom.Node
 
 class HolderOfKeySubjectConfirmationVerifier(private val samlResponseDom: Node) {
+    companion object {
+        internal val CODES = listOf(SAMLProfiles_3_1_a, SAMLProfiles_3_1_b, SAMLProfiles_3_1_c)
+    }
 
     /** 3.1 Holder of Key */
     fun verify() {
@@ -0,0 +1,50 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.verification.rules
+
+import org.codice.compliance.SAMLSpecRefMessage
+import org.codice.compliance.Section
+import org.w3c.dom.Node
+
+/**
+ * What a [Rule] checks: the spec codes it reports and the messages it applies to. Unlike the
+ * rule, it isn't bound to a message, so the [RuleRegistry] can keep it for a whole run.
+ *
+ * @param name - Unique name of the rule, used to report its timings
+ * @param codes - The spec codes the rule reports
+ * @param messageTypes - The local names of the messages the rule applies to. It applies to all
+ * messages if empty. A rule that reports messages of the wrong type must apply to all of them.
+ */
+class RuleInfo(
+    val name: String,
+    val codes: List<SAMLSpecRefMessage>,
+    val messageTypes: Set<String> = emptySet()
+) {
+    /** The sections of the spec codes the rule reports */
+    val sections: Set<Section>
+        get() = codes.map { it.section }.toSet()
+
+    fun appliesTo(message: Node): Boolean {
+        return messageTypes.isEmpty() || messageTypes.contains(message.localName)
+    }
+}
+
+/**
+ * A check of a message, declared with the spec codes it reports and the messages it applies to,
+ * so the [RuleRegistry] can decide whether to run it.
+ *
+ * @param check - Checks the message
+ * @see RuleInfo
+ */
+class Rule(
+    name: String,
+    codes: List<SAMLSpecRefMessage>,
+    messageTypes: Set<String> = emptySet(),
+    val check: () -> Unit
+) {
+    val info = RuleInfo(name, codes, messageTypes)
+}
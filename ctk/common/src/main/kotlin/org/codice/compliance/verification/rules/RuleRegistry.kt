@@ -0,0 +1,87 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.verification.rules
+
+import org.codice.compliance.SAMLSpecRefMessage
+import org.codice.compliance.utils.VerifierRunner
+import org.w3c.dom.Node
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs the rules that apply to a message and keeps track of every rule it has seen and of how
+ * long each of them took, so the expensive ones can be found. Only the [RuleInfo] of a rule is
+ * kept, since its check holds on to the message it was declared for.
+ */
+object RuleRegistry {
+
+    private val rules = ConcurrentHashMap<String, RuleInfo>()
+    private val timings = ConcurrentHashMap<String, RuleTiming>()
+
+    /** The number of times a rule ran and the total time it took. */
+    class RuleTiming(val name: String) {
+        private val runs = AtomicLong()
+        private val nanos = AtomicLong()
+
+        val runCount: Long
+            get() = runs.get()
+
+        val totalMillis: Long
+            get() = TimeUnit.NANOSECONDS.toMillis(nanos.get())
+
+        internal val totalNanos: Long
+            get() = nanos.get()
+
+        internal fun add(elapsedNanos: Long) {
+            runs.incrementAndGet()
+            nanos.addAndGet(elapsedNanos)
+        }
+
+        override fun toString() = "$name: $runCount runs, $totalMillis ms"
+    }
+
+    /**
+     * Runs the rules that apply to {@param message} with the [VerifierRunner], in the given
+     * order. The other rules are skipped.
+     */
+    fun run(message: Node, rules: List<Rule>) {
+        rules.forEach { this.rules.putIfAbsent(it.info.name, it.info) }
+        VerifierRunner.run(message, rules.filter { it.info.appliesTo(message) }.map { rule ->
+            { timed(rule) }
+        })
+    }
+
+    private fun timed(rule: Rule) {
+        val start = System.nanoTime()
+        try {
+            rule.check()
+        } finally {
+            val name = rule.info.name
+            timings.getOrPut(name) { RuleTiming(name) }.add(System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * @return the rules run so far that report {@param code}
+     */
+    fun rulesFor(code: SAMLSpecRefMessage): List<RuleInfo> {
+        return rules.values.filter { it.codes.contains(code) }.sortedBy { it.name }
+    }
+
+    /**
+     * @return the timings of the rules run so far, the slowest first
+     */
+    fun timings(): List<RuleTiming> {
+        return timings.values.sortedByDescending { it.totalNanos }
+    }
+
+    /** Forgets the timings of the rules run so far */
+    fun resetTimings() {
+        timings.clear()
+    }
+}
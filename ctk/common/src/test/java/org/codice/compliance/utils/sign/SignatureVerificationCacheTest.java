@@ -0,0 +1,93 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance.utils.sign;
+
+import static org.codice.compliance.utils.TestCommon.currentSPIssuer;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.cxf.helpers.DOMUtils;
+import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensaml.saml.saml2.core.AuthnRequest;
+import org.opensaml.saml.saml2.core.impl.AuthnRequestBuilder;
+import org.opensaml.xmlsec.keyinfo.KeyInfoSupport;
+import org.opensaml.xmlsec.signature.Signature;
+import org.w3c.dom.Document;
+
+public class SignatureVerificationCacheTest {
+  private static final String SP_ISSUER = "https://samlhost:8993/services/saml";
+
+  private Signature signature;
+  private X509Certificate certificate;
+  private AtomicInteger verifications;
+
+  public SignatureVerificationCacheTest() {
+    OpenSAMLUtil.initSamlEngine();
+  }
+
+  @BeforeEach
+  public void setup() throws Exception {
+    currentSPIssuer = SP_ISSUER;
+    AuthnRequest authnRequest = new AuthnRequestBuilder().buildObject();
+    new SimpleSign().signSamlObject(authnRequest);
+
+    Document doc = DOMUtils.createDocument();
+    doc.appendChild(doc.createElement("root"));
+    OpenSAMLUtil.toDom(authnRequest, doc);
+
+    signature = authnRequest.getSignature();
+    certificate = KeyInfoSupport.getCertificates(signature.getKeyInfo()).get(0);
+    verifications = new AtomicInteger();
+  }
+
+  @Test
+  public void disabledCacheAlwaysVerifies() throws Exception {
+    SignatureVerificationCache cache = new SignatureVerificationCache(0);
+
+    cache.verify(signature, certificate, verifications::incrementAndGet);
+    cache.verify(signature, certificate, verifications::incrementAndGet);
+
+    assertThat(cache.isEnabled(), is(false));
+    assertThat(verifications.get(), is(2));
+    assertThat(cache.hitCount(), is(0L));
+  }
+
+  @Test
+  public void repeatedVerificationIsSkipped() throws Exception {
+    SignatureVerificationCache cache = new SignatureVerificationCache(10);
+
+    cache.verify(signature, certificate, verifications::incrementAndGet);
+    cache.verify(signature, certificate, verifications::incrementAndGet);
+
+    assertThat(verifications.get(), is(1));
+    assertThat(cache.missCount(), is(1L));
+    assertThat(cache.hitCount(), is(1L));
+  }
+
+  @Test
+  public void failedVerificationIsNotRemembered() throws Exception {
+    SignatureVerificationCache cache = new SignatureVerificationCache(10);
+    SignatureVerificationCache.Verification failing =
+        () -> {
+          verifications.incrementAndGet();
+          throw new SimpleSign.SignatureException("Invalid signature");
+        };
+
+    assertThrows(
+        SimpleSign.SignatureException.class, () -> cache.verify(signature, certificate, failing));
+    assertThrows(
+        SimpleSign.SignatureException.class, () -> cache.verify(signature, certificate, failing));
+
+    assertThat(verifications.get(), is(2));
+    assertThat(cache.hitCount(), is(0L));
+  }
+}
@@ -10,13 +10,15 @@
 import io.kotlintest.TestResult
 import io.kotlintest.extensions.TestListener
 import org.codice.compliance.report.Report
+import org.codice.compliance.verification.core.IdRegistry
 
 /**
- * Listener used to reset the Report map for testing purposes after each test
+ * Listener used to reset the Report map and the IDs seen for testing purposes after each test
  */
 object ReportListener : TestListener {
 
     override fun afterTest(description: Description, result: TestResult) {
         Report.resetExceptionMap()
+        IdRegistry.reset()
     }
 }
@@ -0,0 +1,33 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance
+
+import io.kotlintest.Description
+import io.kotlintest.Spec
+import io.kotlintest.extensions.TestListener
+
+/**
+ * Listener used to set System properties for the tests of a spec and to restore their previous
+ * values once the spec is done
+ */
+class SystemPropertyListener(private vararg val properties: Pair<String, String>) : TestListener {
+    private val previousValues = mutableMapOf<String, String?>()
+
+    override fun beforeSpec(description: Description, spec: Spec) {
+        properties.forEach { (key, value) ->
+            previousValues[key] = System.getProperty(key)
+            System.setProperty(key, value)
+        }
+    }
+
+    override fun afterSpec(description: Description, spec: Spec) {
+        previousValues.forEach { (key, value) ->
+            if (value == null) System.clearProperty(key) else System.setProperty(key, value)
+        }
+        previousValues.clear()
+    }
+}
@@ -0,0 +1,117 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.corpus
+
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import org.codice.compliance.corpus.CorpusReader
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.OutputStream
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.zip.GZIPOutputStream
+
+@Suppress("MagicNumber")
+class CorpusReaderSpec : StringSpec() {
+    private val blockSize = 512
+    private val longName = "messages/" + "m".repeat(120) + ".xml"
+
+    private fun read(corpus: File): List<Pair<String, String>> {
+        val messages = mutableListOf<Pair<String, String>>()
+        CorpusReader.read(corpus) { messages.add(it.name to String(it.content, UTF_8)) }
+        corpus.delete()
+        return messages
+    }
+
+    private fun tarFile(suffix: String, write: (OutputStream) -> Unit): File {
+        return File.createTempFile("corpus", suffix).apply {
+            outputStream().use {
+                val output = if (suffix == ".tgz") GZIPOutputStream(it) else it
+                write(output)
+                output.close()
+            }
+        }
+    }
+
+    /** Writes a ustar entry, the way tar writes it */
+    private fun OutputStream.entry(name: String, content: String, type: Char = '0') {
+        val bytes = content.toByteArray(UTF_8)
+        val header = ByteArray(blockSize)
+        fun field(offset: Int, value: String) = value.toByteArray(UTF_8).let {
+            System.arraycopy(it, 0, header, offset, it.size)
+        }
+
+        field(0, name)
+        field(100, "0000644")
+        field(124, String.format("%011o", bytes.size))
+        field(136, String.format("%011o", 0))
+        header[156] = type.toByte()
+        field(257, "ustar\u000000")
+        field(148, " ".repeat(8))
+        field(148, String.format("%06o\u0000", header.sumBy { it.toInt() and 0xff }))
+
+        write(header)
+        write(bytes)
+        write(ByteArray((blockSize - bytes.size % blockSize) % blockSize))
+    }
+
+    private fun OutputStream.end() = write(ByteArray(blockSize * 2))
+
+    init {
+        "the regular files of a tar file are read, except hidden files" {
+            val corpus = tarFile(".tar") {
+                it.entry("messages/", "", '5')
+                it.entry("messages/first", "<first/>")
+                it.entry("messages/.hidden", "<hidden/>")
+                it.entry("messages/second", "<second/>".repeat(100))
+                it.end()
+            }
+
+            read(corpus) shouldBe listOf("messages/first" to "<first/>",
+                    "messages/second" to "<second/>".repeat(100))
+        }
+
+        "gzipped tar files are read" {
+            val corpus = tarFile(".tgz") {
+                it.entry("first", "<first/>")
+                it.end()
+            }
+
+            read(corpus) shouldBe listOf("first" to "<first/>")
+        }
+
+        "the long names of GNU tar files are read" {
+            val corpus = tarFile(".tar") {
+                it.entry("././@LongLink", "$longName\u0000", 'L')
+                it.entry(longName.take(100), "<first/>")
+                it.entry("second", "<second/>")
+                it.end()
+            }
+
+            read(corpus) shouldBe listOf(longName to "<first/>", "second" to "<second/>")
+        }
+
+        "the long names of pax tar files are read" {
+            val record = "path=$longName\n"
+            val corpus = tarFile(".tar") {
+                // The length of a record counts its own digits
+                it.entry("PaxHeader", "${record.length + 4} $record", 'x')
+                it.entry(longName.take(100), "<first/>")
+                it.end()
+            }
+
+            read(corpus) shouldBe listOf(longName to "<first/>")
+        }
+
+        "a tar file without end of archive blocks is read" {
+            val content = ByteArrayOutputStream().apply { entry("first", "<first/>") }
+            val corpus = tarFile(".tar") { it.write(content.toByteArray()) }
+
+            read(corpus) shouldBe listOf("first" to "<first/>")
+        }
+    }
+}
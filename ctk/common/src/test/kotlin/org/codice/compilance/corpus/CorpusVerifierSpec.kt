@@ -0,0 +1,148 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.corpus
+
+import com.google.common.io.Resources
+import io.kotlintest.extensions.TestListener
+import io.kotlintest.matchers.string.shouldContain
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import org.apache.wss4j.common.saml.OpenSAMLUtil
+import org.codice.compilance.ReportListener
+import org.codice.compilance.SystemPropertyListener
+import org.codice.compliance.IMPLEMENTATION_PATH
+import org.codice.compliance.SAMLBindings_3_5_4_a
+import org.codice.compliance.SAMLCore_1_3_4_a
+import org.codice.compliance.Section.BINDINGS_3_5
+import org.codice.compliance.Section.CORE_1_3
+import org.codice.compliance.TEST_SP_METADATA_PROPERTY
+import org.codice.compliance.corpus.CorpusVerifier
+import org.codice.compliance.report.Report
+import org.codice.compliance.utils.SUCCESS
+import org.codice.compliance.utils.TestCommon.Companion.samlObjectToString
+import org.codice.compliance.utils.sign.SimpleSign
+import org.joda.time.DateTime
+import org.opensaml.saml.common.SAMLVersion
+import org.opensaml.saml.saml2.core.impl.IssuerBuilder
+import org.opensaml.saml.saml2.core.impl.LogoutResponseBuilder
+import org.opensaml.saml.saml2.core.impl.StatusBuilder
+import org.opensaml.saml.saml2.core.impl.StatusCodeBuilder
+import java.io.File
+import java.net.URLEncoder
+import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.util.Base64
+import java.util.UUID
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+@Suppress("MagicNumber")
+class CorpusVerifierSpec : StringSpec() {
+    private val properties = SystemPropertyListener(
+            TEST_SP_METADATA_PROPERTY to Resources.getResource("test-sp-metadata.xml").path,
+            IMPLEMENTATION_PATH to Resources.getResource("implementation").path)
+
+    override fun listeners(): List<TestListener> = listOf(ReportListener, properties)
+
+    private val notBase64 = "SAMLResponse=!!!!"
+    private val notSaml = "<notSaml/>"
+
+    /**
+     * A logout response of the test IdP, as the SP it was sent to received it. It's signed with
+     * the test keystore, since only the signature, not its certificate, is verified.
+     */
+    private fun logoutResponse(id: String = "a" + UUID.randomUUID().toString()): String {
+        return LogoutResponseBuilder().buildObject().apply {
+            this.id = id
+            version = SAMLVersion.VERSION_20
+            issueInstant = DateTime()
+            inResponseTo = "a" + UUID.randomUUID().toString()
+            destination = "http://correct.uri"
+            issuer = IssuerBuilder().buildObject().apply { value = "http://correct.idp.issuer" }
+            status = StatusBuilder().buildObject().apply {
+                statusCode = StatusCodeBuilder().buildObject().apply { value = SUCCESS }
+            }
+            SimpleSign().signSamlObject(this)
+        }.let { samlObjectToString(it) }
+    }
+
+    private fun formValue(message: String): String {
+        val encoded = Base64.getEncoder().encodeToString(message.toByteArray(UTF_8))
+        return "SAMLResponse=${URLEncoder.encode(encoded, UTF_8.name())}"
+    }
+
+    init {
+        OpenSAMLUtil.initSamlEngine()
+
+        "a valid logout response passes" {
+            val corpus = Files.createTempDirectory("corpus").toFile()
+            File(corpus, "form").writeText(formValue(logoutResponse()))
+            File(corpus, "xml").writeText(logoutResponse())
+
+            CorpusVerifier(threads = 2).verify(corpus).apply {
+                messages.get() shouldBe 2L
+                failedMessages.get() shouldBe 0L
+                unverifiedMessages.get() shouldBe 0L
+            }
+            Report.hasExceptions() shouldBe false
+
+            corpus.deleteRecursively()
+        }
+
+        "an ID used by two messages fails one of them" {
+            val corpus = Files.createTempDirectory("corpus").toFile()
+            File(corpus, "first").writeText(logoutResponse("a-reused"))
+            File(corpus, "second").writeText(formValue(logoutResponse("a-reused")))
+            File(corpus, "third").writeText(logoutResponse())
+
+            CorpusVerifier(threads = 2).verify(corpus).apply {
+                messages.get() shouldBe 3L
+                failedMessages.get() shouldBe 1L
+                failedMessagesPerSection[CORE_1_3]?.get() shouldBe 1L
+            }
+            Report.getExceptionMessages(CORE_1_3).shouldContain(SAMLCore_1_3_4_a.message)
+
+            corpus.deleteRecursively()
+        }
+
+        "every message of a directory is verified, except hidden files" {
+            val corpus = Files.createTempDirectory("corpus").toFile()
+            File(corpus, "first").writeText(notBase64)
+            File(corpus, "nested").mkdir()
+            File(corpus, "nested/second").writeText(notBase64)
+            File(corpus, ".hidden").writeText(notSaml)
+
+            CorpusVerifier(threads = 2).verify(corpus).apply {
+                messages.get() shouldBe 2L
+                failedMessages.get() shouldBe 2L
+                unverifiedMessages.get() shouldBe 0L
+                failedMessagesPerSection[BINDINGS_3_5]?.get() shouldBe 2L
+            }
+            Report.getExceptionMessages(BINDINGS_3_5).shouldContain(SAMLBindings_3_5_4_a.message)
+
+            corpus.deleteRecursively()
+        }
+
+        "messages that aren't SAML responses are counted but not reported" {
+            val corpus = File.createTempFile("corpus", ".zip")
+            ZipOutputStream(corpus.outputStream()).use {
+                it.putNextEntry(ZipEntry("first"))
+                it.write(notBase64.toByteArray())
+                it.putNextEntry(ZipEntry("second.xml"))
+                it.write(notSaml.toByteArray())
+            }
+
+            CorpusVerifier(threads = 2).verify(corpus).apply {
+                messages.get() shouldBe 1L
+                failedMessages.get() shouldBe 1L
+                unverifiedMessages.get() shouldBe 1L
+            }
+
+            corpus.delete()
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.utils
+
+import io.kotlintest.matchers.string.shouldContain
+import io.kotlintest.shouldBe
+import io.kotlintest.shouldThrow
+import io.kotlintest.specs.StringSpec
+import org.codice.compliance.utils.AuthnRequestPool
+import org.codice.compliance.utils.PreSignedAuthnRequest
+import org.codice.compliance.utils.TestCommon.Companion.DEFAULT_SP_ISSUER
+import org.codice.compliance.utils.TestCommon.Companion.DSA_SP_ISSUER
+import org.codice.security.saml.SamlProtocol.Binding
+import org.codice.security.saml.SamlProtocol.Binding.HTTP_POST
+import org.codice.security.saml.SamlProtocol.Binding.HTTP_REDIRECT
+import org.joda.time.DateTime
+import org.opensaml.saml.saml2.core.impl.AuthnRequestBuilder
+import org.opensaml.saml.saml2.core.impl.IssuerBuilder
+import java.time.Duration
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicInteger
+
+@Suppress("MagicNumber")
+class AuthnRequestPoolSpec : StringSpec() {
+    private fun request(binding: Binding, issuer: String, issueInstant: DateTime = DateTime()) =
+            PreSignedAuthnRequest(binding, AuthnRequestBuilder().buildObject().apply {
+                id = "a" + UUID.randomUUID().toString()
+                this.issueInstant = issueInstant
+                this.issuer = IssuerBuilder().buildObject().apply { value = issuer }
+            }, "", emptyMap())
+
+    init {
+        "requests are taken per binding and SP identity" {
+            AuthnRequestPool(2, Duration.ofMinutes(1), 1) { binding, issuer ->
+                request(binding, issuer)
+            }.use { pool ->
+                listOf(HTTP_POST, HTTP_REDIRECT).forEach { binding ->
+                    listOf(DEFAULT_SP_ISSUER, DSA_SP_ISSUER).forEach { issuer ->
+                        pool.take(binding, issuer).let {
+                            it.binding shouldBe binding
+                            it.authnRequest.issuer.value shouldBe issuer
+                        }
+                    }
+                }
+            }
+        }
+
+        "every taken request has its own ID" {
+            AuthnRequestPool(4, Duration.ofMinutes(1), 2) { binding, issuer ->
+                request(binding, issuer)
+            }.use { pool ->
+                val ids = (1..20).map { pool.take(HTTP_POST, DEFAULT_SP_ISSUER).id }
+                ids.toSet().size shouldBe ids.size
+            }
+        }
+
+        "stale requests are discarded" {
+            val produced = AtomicInteger()
+            AuthnRequestPool(1, Duration.ofMinutes(1), 1) { binding, issuer ->
+                val isPostKey = binding == HTTP_POST && issuer == DEFAULT_SP_ISSUER
+                if (isPostKey && produced.getAndIncrement() < 3) {
+                    request(binding, issuer, DateTime().minusMinutes(2))
+                } else {
+                    request(binding, issuer)
+                }
+            }.use { pool ->
+                val request = pool.take(HTTP_POST, DEFAULT_SP_ISSUER)
+                request.isStale(Duration.ofMinutes(1)) shouldBe false
+                pool.discardedCount shouldBe 3L
+            }
+        }
+
+        "the producers' error is thrown when no request is produced in time" {
+            AuthnRequestPool(1, Duration.ofMinutes(1), 1) { _, _ ->
+                throw IllegalArgumentException("The keystore could not be read.")
+            }.use { pool ->
+                val exception = shouldThrow<IllegalStateException> {
+                    pool.take(HTTP_POST, DEFAULT_SP_ISSUER, Duration.ofMillis(500))
+                }
+                exception.cause?.message.toString() shouldContain "keystore"
+            }
+        }
+
+        "a closed pool can't be taken from" {
+            val pool = AuthnRequestPool(1, Duration.ofMinutes(1), 1) { binding, issuer ->
+                request(binding, issuer)
+            }
+            pool.close()
+            shouldThrow<IllegalStateException> { pool.take(HTTP_POST, DEFAULT_SP_ISSUER) }
+        }
+    }
+}
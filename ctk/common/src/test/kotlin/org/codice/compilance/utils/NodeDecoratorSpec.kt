@@ -0,0 +1,48 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.utils
+
+import io.kotlintest.shouldBe
+import io.kotlintest.shouldNotBe
+import io.kotlintest.specs.StringSpec
+import org.apache.wss4j.common.saml.OpenSAMLUtil
+import org.codice.compliance.Common.Companion.buildDom
+import org.codice.compliance.documentVersion
+import org.codice.compliance.markDocumentModified
+import org.codice.compliance.utils.NodeDecorator
+
+class NodeDecoratorSpec : StringSpec() {
+    init {
+        OpenSAMLUtil.initSamlEngine()
+
+        fun message() = NodeDecorator(buildDom(
+                "<s:Response xmlns:s=\"urn:oasis:names:tc:SAML:2.0:protocol\" ID=\"a1\"/>"))
+
+        "the XMLObject is unmarshalled once" {
+            val message = message()
+            (message.xmlObject === message.xmlObject) shouldBe true
+        }
+
+        "reading the XMLObject of a modified message doesn't mark it as modified again" {
+            val message = message()
+            val first = message.xmlObject
+            message.markDocumentModified()
+            val version = message.documentVersion()
+
+            (message.xmlObject === first) shouldBe false
+            message.documentVersion() shouldBe version
+            (message.xmlObject === message.xmlObject) shouldBe true
+        }
+
+        "invalidating the message marks it as modified" {
+            val message = message()
+            val version = message.documentVersion()
+            message.invalidate()
+            message.documentVersion() shouldNotBe version
+        }
+    }
+}
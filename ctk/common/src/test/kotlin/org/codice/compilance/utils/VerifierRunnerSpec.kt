@@ -0,0 +1,118 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.utils
+
+import io.kotlintest.extensions.TestListener
+import io.kotlintest.matchers.string.shouldContain
+import io.kotlintest.matchers.string.shouldNotContain
+import io.kotlintest.shouldBe
+import io.kotlintest.shouldThrow
+import io.kotlintest.specs.StringSpec
+import org.codice.compilance.ReportListener
+import org.codice.compliance.Common.Companion.buildDom
+import org.codice.compliance.PARALLEL_VERIFICATION
+import org.codice.compliance.SAMLComplianceException
+import org.codice.compliance.SAMLCore_1_3_1_a
+import org.codice.compliance.SAMLCore_1_3_4_a
+import org.codice.compliance.SAMLGeneral_a
+import org.codice.compliance.Section.CORE_1_3
+import org.codice.compliance.Section.GENERAL
+import org.codice.compliance.report.Report
+import org.codice.compliance.utils.VerifierRunner
+import org.codice.compliance.verification.core.CommonDataTypeVerifier
+import java.util.UUID
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class VerifierRunnerSpec : StringSpec() {
+    override fun listeners(): List<TestListener> = listOf(ReportListener)
+
+    init {
+        val message = buildDom("<s:Response xmlns:s=\"urn:oasis:names:tc:SAML:2.0:protocol\"/>")
+
+        fun inParallel(block: () -> Unit) {
+            System.setProperty(PARALLEL_VERIFICATION, "true")
+            try {
+                block()
+            } finally {
+                System.clearProperty(PARALLEL_VERIFICATION)
+            }
+        }
+
+        fun report(message: String) {
+            Report.addExceptionMessage(SAMLComplianceException.create(SAMLGeneral_a,
+                    message = message))
+        }
+
+        "updates are applied in the order the verifiers were given" {
+            val secondReported = CountDownLatch(1)
+
+            inParallel {
+                VerifierRunner.run(message, {
+                    // Bounded, in case the pool runs both verifiers on the same thread
+                    secondReported.await(1, TimeUnit.SECONDS)
+                    report("first")
+                }, {
+                    report("second")
+                    secondReported.countDown()
+                })
+            }
+
+            Report.getExceptionMessages(GENERAL).apply {
+                this.shouldContain("first")
+                this.shouldNotContain("second")
+            }
+        }
+
+        "the duplicate of an ID is the one given last" {
+            val id = buildDom("<id>_${UUID.randomUUID()}</id>")
+
+            inParallel {
+                VerifierRunner.run(message,
+                        { CommonDataTypeVerifier.verifyIdValue(id) },
+                        { CommonDataTypeVerifier.verifyIdValue(id, SAMLCore_1_3_1_a) })
+            }
+
+            Report.getExceptionMessages(CORE_1_3).apply {
+                this.shouldContain(SAMLCore_1_3_4_a.message)
+                this.shouldContain(SAMLCore_1_3_1_a.message)
+            }
+        }
+
+        "the updates after a verifier that throws are discarded" {
+            val exception = shouldThrow<SAMLComplianceException> {
+                inParallel {
+                    VerifierRunner.run(message,
+                            { report("before") },
+                            {
+                                throw SAMLComplianceException.create(SAMLGeneral_a,
+                                        message = "thrown")
+                            },
+                            {
+                                Report.addExceptionMessage(SAMLComplianceException.create(
+                                        SAMLCore_1_3_1_a, message = "after"))
+                            })
+                }
+            }
+
+            exception.message.shouldContain("thrown")
+            Report.getExceptionMessages(GENERAL).shouldContain("before")
+            Report.getExceptionMessages(CORE_1_3) shouldBe ""
+        }
+
+        "verifiers run on the calling thread when parallel verification is off" {
+            val thread = Thread.currentThread()
+            val threads = mutableListOf<Thread>()
+
+            VerifierRunner.run(message,
+                    { threads.add(Thread.currentThread()) },
+                    { threads.add(Thread.currentThread()) })
+
+            threads shouldBe listOf(thread, thread)
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.utils.schema
+
+import io.kotlintest.extensions.TestListener
+import io.kotlintest.matchers.boolean.shouldBeFalse
+import io.kotlintest.matchers.boolean.shouldBeTrue
+import io.kotlintest.matchers.string.shouldContain
+import io.kotlintest.specs.StringSpec
+import org.codice.compilance.ReportListener
+import org.codice.compliance.Common.Companion.buildDom
+import org.codice.compliance.SAMLCore_Schema
+import org.codice.compliance.Section.SCHEMA
+import org.codice.compliance.markDocumentModified
+import org.codice.compliance.report.Report
+import org.codice.compliance.utils.ASSERTION_NAMESPACE
+import org.codice.compliance.utils.PROTOCOL_NAMESPACE
+import org.codice.compliance.utils.schema.SchemaValidator
+import org.w3c.dom.Element
+import java.time.Instant
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class SchemaValidatorSpec : StringSpec() {
+    override fun listeners(): List<TestListener> = listOf(ReportListener)
+
+    init {
+        val now = Instant.now()
+        val version = "Version=\"2.0\""
+
+        val response = { assertionVersion: String ->
+            """
+                |<s:Response xmlns:s="$PROTOCOL_NAMESPACE"
+                |            xmlns:saml="$ASSERTION_NAMESPACE"
+                |            xmlns:xs="http://www.w3.org/2001/XMLSchema"
+                |            xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance"
+                |            ID="id" Version="2.0" IssueInstant="$now">
+                |  <s:Status>
+                |    <s:StatusCode Value="urn:oasis:names:tc:SAML:2.0:status:Success"/>
+                |  </s:Status>
+                |  <saml:Assertion ID="a" $assertionVersion IssueInstant="$now">
+                |    <saml:Issuer>https://idp</saml:Issuer>
+                |    <saml:AttributeStatement>
+                |      <saml:Attribute Name="name">
+                |        <saml:AttributeValue xsi:type="xs:string">value</saml:AttributeValue>
+                |      </saml:Attribute>
+                |    </saml:AttributeStatement>
+                |  </saml:Assertion>
+                |</s:Response>
+                """.trimMargin()
+        }
+
+        "a valid message passes" {
+            SchemaValidator.validateSAMLMessage(buildDom(response(version)))
+            Report.hasExceptions().shouldBeFalse()
+        }
+
+        "a fragment is validated with the namespaces of its ancestors" {
+            val assertion = buildDom(response(version)).getElementsByTagNameNS("*", "Assertion")
+            SchemaValidator.validateSAMLMessage(assertion.item(0))
+            Report.hasExceptions().shouldBeFalse()
+        }
+
+        "errors are reported with the invalid node" {
+            SchemaValidator.validateSAMLMessage(buildDom(response(version)))
+            SchemaValidator.validateSAMLMessage(buildDom(response("")))
+            Report.hasExceptions().shouldBeTrue()
+            Report.getExceptionMessages(SCHEMA).apply {
+                this.shouldContain(SAMLCore_Schema.message)
+                this.shouldContain("<saml:Assertion")
+            }
+        }
+
+        "a message is only validated again after it was modified" {
+            val invalidResponse = buildDom(response(""))
+            SchemaValidator.validateSAMLMessage(invalidResponse)
+            Report.resetExceptionMap()
+
+            // The previous result is reported again
+            SchemaValidator.validateSAMLMessage(invalidResponse)
+            Report.hasExceptions().shouldBeTrue()
+            Report.resetExceptionMap()
+
+            (invalidResponse.getElementsByTagNameNS("*", "Assertion").item(0) as Element)
+                    .setAttribute("Version", "2.0")
+            invalidResponse.markDocumentModified()
+            SchemaValidator.validateSAMLMessage(invalidResponse)
+            Report.hasExceptions().shouldBeFalse()
+        }
+
+        "messages are validated concurrently" {
+            val executor = Executors.newFixedThreadPool(4)
+            try {
+                val tasks = (1..20).map {
+                    Callable { SchemaValidator.validateSAMLMessage(buildDom(response(version))) }
+                }
+                executor.invokeAll(tasks).forEach { it.get() }
+            } finally {
+                executor.shutdown()
+            }
+            Report.hasExceptions().shouldBeFalse()
+        }
+    }
+}
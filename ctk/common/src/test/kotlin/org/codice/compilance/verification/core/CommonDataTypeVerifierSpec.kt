@@ -136,6 +136,11 @@ override fun listeners(): List<TestListener> = listOf(ReportListener)
         }
 
         "duplicates id values fail" {
+            listOf("<fld/>", "<fld>   </fld>", "<fld>this is my id</fld>").forEach {
+                CommonDataTypeVerifier.verifyIdValue(buildDom(it))
+            }
+            Report.hasExceptions().shouldBeFalse()
+
             buildDom("<fld/>").let {
                 CommonDataTypeVerifier.verifyIdValue(it, SAMLCore_3_4_1_1_a)
             }
@@ -0,0 +1,41 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.verification.core
+
+import io.kotlintest.extensions.TestListener
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import org.codice.compilance.ReportListener
+import org.codice.compliance.verification.core.IdRegistry
+
+class IdRegistrySpec : StringSpec() {
+    override fun listeners(): List<TestListener> = listOf(ReportListener)
+
+    init {
+        "IDs are only new the first time they're seen" {
+            IdRegistry.add("id1") shouldBe true
+            IdRegistry.add("id2") shouldBe true
+            IdRegistry.add("id1") shouldBe false
+        }
+
+        "reset forgets the IDs seen" {
+            IdRegistry.add("id1") shouldBe true
+            IdRegistry.reset()
+            IdRegistry.add("id1") shouldBe true
+        }
+
+        "reused IDs are found when only fingerprints are kept" {
+            // Far more IDs than expected, so the fingerprints outgrow their initial table
+            IdRegistry.reset(expectedIds = 10)
+            val ids = (1..10_000).map { "_id$it" }
+
+            ids.all { IdRegistry.add(it) } shouldBe true
+            ids.none { IdRegistry.add(it) } shouldBe true
+            IdRegistry.add("_id10001") shouldBe true
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.verification.core
+
+import io.kotlintest.extensions.TestListener
+import io.kotlintest.matchers.boolean.shouldBeFalse
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import org.codice.compilance.ReportListener
+import org.codice.compliance.Common.Companion.buildDom
+import org.codice.compliance.SAMLSpecRefMessage
+import org.codice.compliance.report.Report
+import org.codice.compliance.utils.ASSERTION_NAMESPACE
+import org.codice.compliance.utils.ENTITY
+import org.codice.compliance.utils.PERSISTENT_ID
+import org.codice.compliance.utils.PROTOCOL_NAMESPACE
+import org.codice.compliance.utils.TRANSIENT_ID
+import org.codice.compliance.utils.XSI
+import org.codice.compliance.verification.core.CommonDataTypeVerifier
+import org.codice.compliance.verification.core.SamlAssertionsVerifier
+import org.codice.compliance.verification.core.SamlDefinedIdentifiersVerifier
+import org.codice.compliance.verification.core.SamlDefinedIdentifiersVerifier.Companion.ATTRIBUTE_NAME_FORMAT_BASIC
+import org.codice.compliance.verification.core.SamlDefinedIdentifiersVerifier.Companion.ATTRIBUTE_NAME_FORMAT_URI
+import org.codice.compliance.verification.core.SamlDefinedIdentifiersVerifier.Companion.ID_VALUE_LENGTH_LIMIT
+import org.codice.compliance.verification.core.SamlVersioningVerifier
+import org.codice.compliance.verification.core.SignatureSyntaxAndProcessingVerifier
+
+/**
+ * The codes a verifier declares are the ones the [org.codice.compliance.verification.rules.Rule]
+ * running it is found by, so a verifier mustn't report any other code.
+ */
+class RuleCodesSpec : StringSpec() {
+    override fun listeners(): List<TestListener> = listOf(ReportListener)
+
+    /** @return the codes reported by {@param verify}, including the ones of deferred updates */
+    private fun reportedCodes(verify: () -> Unit): Set<SAMLSpecRefMessage> {
+        val recording = Report.Recording()
+        recording.record(verify)
+        recording.replay()
+        return recording.exceptions.flatMap { it.errorCodes }.toSet()
+    }
+
+    init {
+        val longId = "A".repeat(ID_VALUE_LENGTH_LIMIT + 1)
+        val dayBefore = "2018-05-01T00:00:00Z"
+        val dayAfter = "2018-05-02T00:00:00Z"
+
+        // Breaks as many of the rules of the core verifiers as possible
+        val message = buildDom("""
+            |<samlp:Response
+            |  xmlns:samlp="$PROTOCOL_NAMESPACE"
+            |  xmlns:saml="$ASSERTION_NAMESPACE"
+            |  xmlns:saml1="urn:oasis:names:tc:SAML:1.0:assertion"
+            |  xmlns:ds="http://www.w3.org/2000/09/xmldsig#"
+            |  xmlns:xsi="$XSI"
+            |  xmlns:xs="http://www.w3.org/2001/XMLSchema"
+            |  ID="_response"
+            |  Version="1.0"
+            |  IssueInstant="2018-05-01T13:15:30">
+            |  <saml1:Issuer>https://localhost:8993/services/idp/login</saml1:Issuer>
+            |  <ds:Signature>
+            |    <ds:SignedInfo/>
+            |  </ds:Signature>
+            |  <saml:Assertion ID="_assertion" Version="1.1" IssueInstant="2018-05-01T13:15:30">
+            |    <saml:Issuer NameQualifier="idp" Format="$ENTITY">idp</saml:Issuer>
+            |    <saml:Statement/>
+            |    <saml:Subject>
+            |      <saml:NameID Format="$TRANSIENT_ID">$longId</saml:NameID>
+            |      <saml:SubjectConfirmation Method="not a URI">
+            |        <saml:NameID Format="$TRANSIENT_ID">$longId</saml:NameID>
+            |        <saml:SubjectConfirmationData NotBefore="$dayAfter" NotOnOrAfter="$dayBefore"/>
+            |      </saml:SubjectConfirmation>
+            |    </saml:Subject>
+            |    <saml:Conditions NotBefore="$dayAfter" NotOnOrAfter="$dayBefore">
+            |      <saml:Condition/>
+            |      <saml:OneTimeUse/>
+            |      <saml:OneTimeUse/>
+            |      <saml:ProxyRestriction>
+            |        <saml:Audience>https://localhost:8993/services/sp</saml:Audience>
+            |      </saml:ProxyRestriction>
+            |      <saml:ProxyRestriction/>
+            |      <saml:AudienceRestriction>
+            |        <saml:Audience>not a URI</saml:Audience>
+            |      </saml:AudienceRestriction>
+            |    </saml:Conditions>
+            |    <saml:AuthnStatement AuthnInstant="2018-05-01T13:15:30"/>
+            |    <saml:AttributeStatement>
+            |      <saml:Attribute Name="not a URI" NameFormat="$ATTRIBUTE_NAME_FORMAT_URI"/>
+            |      <saml:Attribute Name="not basic" NameFormat="$ATTRIBUTE_NAME_FORMAT_BASIC"/>
+            |      <saml:Attribute Name="values">
+            |        <saml:AttributeValue xsi:type="xs:string"> </saml:AttributeValue>
+            |        <saml:AttributeValue xsi:type="xs:anyURI">not a URI</saml:AttributeValue>
+            |        <saml:AttributeValue xsi:type="xs:dateTime">2018-05-01</saml:AttributeValue>
+            |        <saml:AttributeValue xsi:type="xs:ID">_value</saml:AttributeValue>
+            |        <saml:AttributeValue xsi:type="xs:ID">_value</saml:AttributeValue>
+            |      </saml:Attribute>
+            |    </saml:AttributeStatement>
+            |    <saml:AuthzDecisionStatement Resource="not a URI">
+            |      <saml:Action Namespace="not a URI">Read</saml:Action>
+            |    </saml:AuthzDecisionStatement>
+            |  </saml:Assertion>
+            |  <saml:Assertion ID="_assertion" Version="2.0" IssueInstant="$dayBefore">
+            |    <saml:Issuer Format="$PERSISTENT_ID" SPNameQualifier="sp">$longId</saml:Issuer>
+            |    <saml:AuthnStatement AuthnInstant="$dayBefore"/>
+            |    <saml:AttributeStatement/>
+            |    <saml:AuthzDecisionStatement Resource="https://localhost:8993/services/sp"/>
+            |  </saml:Assertion>
+            |  <saml:Assertion ID="_empty" Version="2.0" IssueInstant="$dayBefore"/>
+            |</samlp:Response>
+           """.trimMargin())
+
+        "the common data type checks only report their declared codes" {
+            val codes = reportedCodes { CommonDataTypeVerifier.verifyCommonDataType(message) }
+
+            codes.isEmpty().shouldBeFalse()
+            codes - CommonDataTypeVerifier.CODES shouldBe emptySet<SAMLSpecRefMessage>()
+        }
+
+        "the versioning checks only report their declared codes" {
+            val codes = reportedCodes { SamlVersioningVerifier(message).verify() }
+
+            codes.isEmpty().shouldBeFalse()
+            codes - SamlVersioningVerifier.CODES shouldBe emptySet<SAMLSpecRefMessage>()
+        }
+
+        "the signature checks only report their declared codes" {
+            val codes = reportedCodes { SignatureSyntaxAndProcessingVerifier(message).verify() }
+
+            codes.isEmpty().shouldBeFalse()
+            codes - SignatureSyntaxAndProcessingVerifier.CODES shouldBe
+                    emptySet<SAMLSpecRefMessage>()
+        }
+
+        "the SAML defined identifier checks only report their declared codes" {
+            val codes = reportedCodes { SamlDefinedIdentifiersVerifier(message).verify() }
+
+            codes.isEmpty().shouldBeFalse()
+            codes - SamlDefinedIdentifiersVerifier.CODES shouldBe emptySet<SAMLSpecRefMessage>()
+        }
+
+        "the assertion checks only report their declared codes" {
+            val codes = reportedCodes { SamlAssertionsVerifier(message).verify() }
+
+            codes.isEmpty().shouldBeFalse()
+            codes - SamlAssertionsVerifier.CODES shouldBe emptySet<SAMLSpecRefMessage>()
+        }
+    }
+}
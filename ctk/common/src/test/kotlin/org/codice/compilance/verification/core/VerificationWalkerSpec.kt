@@ -0,0 +1,67 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.verification.core
+
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import org.codice.compliance.Common.Companion.buildDom
+import org.codice.compliance.recursiveChildren
+import org.codice.compliance.verification.core.ElementVisitor
+import org.codice.compliance.verification.core.VerificationWalker
+import org.w3c.dom.Node
+
+class VerificationWalkerSpec : StringSpec() {
+    private class RecordingVisitor(
+        override val elementNames: Set<String> = emptySet(),
+        override val attributeNames: Set<String> = emptySet(),
+        override val visitsAllElements: Boolean = false
+    ) : ElementVisitor {
+        val events = mutableListOf<String>()
+
+        override fun start(root: Node) {
+            events.add("start ${root.localName}")
+        }
+
+        override fun visit(element: Node) {
+            events.add(element.localName)
+        }
+
+        override fun finish(root: Node) {
+            events.add("finish ${root.localName}")
+        }
+    }
+
+    init {
+        val response = buildDom("""
+            |<s:Response xmlns:s="urn:oasis:names:tc:SAML:2.0:protocol"
+            |            xmlns:a="urn:oasis:names:tc:SAML:2.0:assertion">
+            |  <a:Assertion ID="a1">
+            |    <a:Subject><a:NameID Format="f1">n1</a:NameID></a:Subject>
+            |  </a:Assertion>
+            |  <a:Issuer Format="f2">i</a:Issuer>
+            |</s:Response>
+            """.trimMargin())
+
+        "each visitor only visits the elements it's interested in" {
+            val byName = RecordingVisitor(elementNames = setOf("NameID", "Assertion"))
+            val byAttribute = RecordingVisitor(attributeNames = setOf("Format"))
+            val everything = RecordingVisitor(visitsAllElements = true)
+
+            VerificationWalker(byName, byAttribute, everything).walk(response)
+
+            byName.events shouldBe
+                    listOf("start Response", "Assertion", "NameID", "finish Response")
+            byAttribute.events shouldBe
+                    listOf("start Response", "Issuer", "NameID", "finish Response")
+            everything.events shouldBe listOf("start Response") +
+                    response.recursiveChildren()
+                            .filter { it.nodeType == Node.ELEMENT_NODE }
+                            .map { it.localName } +
+                    "finish Response"
+        }
+    }
+}
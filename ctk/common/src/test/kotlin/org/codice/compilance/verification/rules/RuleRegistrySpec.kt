@@ -0,0 +1,56 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compilance.verification.rules
+
+import io.kotlintest.extensions.TestListener
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import org.codice.compilance.ReportListener
+import org.codice.compliance.Common.Companion.buildDom
+import org.codice.compliance.SAMLCore_1_3_1_a
+import org.codice.compliance.SAMLCore_1_3_4_a
+import org.codice.compliance.Section.CORE_1_3
+import org.codice.compliance.utils.LOGOUT_RESPONSE
+import org.codice.compliance.utils.RESPONSE
+import org.codice.compliance.verification.rules.Rule
+import org.codice.compliance.verification.rules.RuleRegistry
+
+class RuleRegistrySpec : StringSpec() {
+    override fun listeners(): List<TestListener> = listOf(ReportListener)
+
+    init {
+        val response = buildDom("<s:Response xmlns:s=\"urn:oasis:names:tc:SAML:2.0:protocol\"/>")
+
+        "rules only run for the messages they apply to" {
+            val ran = mutableListOf<String>()
+
+            RuleRegistry.run(response, listOf(
+                    Rule("RuleRegistrySpec all", listOf(SAMLCore_1_3_1_a)) {
+                        ran.add("all")
+                    },
+                    Rule("RuleRegistrySpec logout", listOf(SAMLCore_1_3_1_a),
+                            setOf(LOGOUT_RESPONSE)) { ran.add("logout") },
+                    Rule("RuleRegistrySpec response", listOf(SAMLCore_1_3_1_a),
+                            setOf(RESPONSE)) { ran.add("response") }))
+
+            ran shouldBe listOf("all", "response")
+        }
+
+        "the rules that ran are timed and found by the codes they report" {
+            val rule = Rule("RuleRegistrySpec timed", listOf(SAMLCore_1_3_4_a)) {}
+            RuleRegistry.resetTimings()
+
+            RuleRegistry.run(response, listOf(rule))
+            RuleRegistry.run(response, listOf(rule))
+
+            RuleRegistry.timings().map { it.name to it.runCount } shouldBe
+                    listOf("RuleRegistrySpec timed" to 2L)
+            RuleRegistry.rulesFor(SAMLCore_1_3_4_a).contains(rule.info) shouldBe true
+            rule.info.sections shouldBe setOf(CORE_1_3)
+        }
+    }
+}
@@ -15,12 +15,18 @@
 import org.codice.compliance.RUN_DDF_PROFILE
 import org.codice.compliance.TEST_SP_METADATA_PROPERTY
 import org.codice.compliance.USER_LOGIN
+import org.codice.compliance.utils.schema.SchemaValidator
 import us.jimschubert.kopper.Parser
 import java.io.File
 
+private const val VERIFY_CORPUS = "verify-corpus"
+
 /**
  * Used to build the samlconf script.
  * NOTE: Parallel builds are NOT supported.
+ *
+ * {@code samlconf verify-corpus <corpus> [options]} verifies a corpus of captured messages
+ * instead of running the tests against an IdP.
  */
 @Suppress("StringLiteralDuplication")
 fun main(args: Array<String>) {
@@ -30,8 +36,11 @@ fun main(args: Array<String>) {
     val defaultImplPath = "$samlDist${File.separator}$DEFAULT_IMPLEMENTATION_PATH"
     val ctkMetadataPath = "$samlDist${File.separator}conf${File.separator}samlconf-sp-metadata.xml"
 
+    val corpus = if (args.firstOrNull() == VERIFY_CORPUS) {
+        File(requireNotNull(args.getOrNull(1)) { "The corpus to verify must be given." })
+    } else null
     val parser = createParser()
-    val arguments = parser.parse(args)
+    val arguments = parser.parse(if (corpus != null) args.drop(2).toTypedArray() else args)
 
     val implementationPath = arguments.option("i") ?: defaultImplPath
     var userLogin = arguments.option("u") ?: "admin:admin"
@@ -42,9 +51,15 @@ fun main(args: Array<String>) {
 
     if (arguments.flag("help")) {
         println(parser.printHelp())
+        println("$VERIFY_CORPUS <corpus> [options]: Verifies a directory, zip or tar file of " +
+                "SAMLResponse form values or messages captured from the IdP instead of running " +
+                "the tests.")
         return
     }
 
+    // Compiling the schema takes a while, so it's done while the tests are set up
+    SchemaValidator.preloadSchema()
+
     System.setProperty(IMPLEMENTATION_PATH, implementationPath)
     System.setProperty(USER_LOGIN, userLogin)
     System.setProperty(TEST_SP_METADATA_PROPERTY, ctkMetadataPath)
@@ -58,7 +73,11 @@ fun main(args: Array<String>) {
         LogLevel.INFO
     }
 
-    TestRunner().launchTests()
+    if (corpus != null) {
+        CorpusRunner(corpus).verifyCorpus()
+    } else {
+        TestRunner().launchTests()
+    }
 }
 
 private fun createParser(): Parser {
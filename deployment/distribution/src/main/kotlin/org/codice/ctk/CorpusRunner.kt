@@ -0,0 +1,46 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.ctk
+
+import de.jupf.staticlog.Log
+import org.codice.compliance.corpus.CorpusVerifier
+import org.codice.compliance.debugWithSupplier
+import org.codice.compliance.report.Report
+import org.codice.compliance.verification.rules.RuleRegistry
+import org.fusesource.jansi.Ansi
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+internal class CorpusRunner(private val corpus: File) {
+
+    internal fun verifyCorpus() {
+        System.out.apply {
+            println()
+            println("----------------------------------------")
+            println("SAML Conformance Corpus Verification")
+            println("----------------------------------------")
+            println()
+        }
+
+        val start = System.nanoTime()
+        val summary = CorpusVerifier().verify(corpus)
+        println(summary)
+        println("Verified in ${TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)} s")
+
+        Report.writeReport()
+        Log.debugWithSupplier {
+            "Rule timings:\n${RuleRegistry.timings().joinToString("\n")}"
+        }
+
+        if (Report.hasExceptions() || summary.unverifiedMessages.get() > 0) {
+            println(Ansi.ansi().fgRed().a("CORPUS FAILED").reset())
+            System.exit(1)
+        }
+
+        println(Ansi.ansi().fgGreen().a("CORPUS PASSED").reset())
+    }
+}
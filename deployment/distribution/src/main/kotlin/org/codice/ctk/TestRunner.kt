@@ -6,7 +6,10 @@
 */
 package org.codice.ctk
 
+import de.jupf.staticlog.Log
+import org.codice.compliance.debugWithSupplier
 import org.codice.compliance.report.Report
+import org.codice.compliance.verification.rules.RuleRegistry
 import org.codice.compliance.web.slo.PostSLOTest
 import org.codice.compliance.web.slo.RedirectSLOTest
 import org.codice.compliance.web.slo.error.PostSLOErrorTest
@@ -51,6 +54,9 @@ internal fun launchTests() {
         }.execute(request)
 
         Report.writeReport()
+        Log.debugWithSupplier {
+            "Rule timings:\n${RuleRegistry.timings().joinToString("\n")}"
+        }
 
         if (Report.hasExceptions()) {
             println(Ansi.ansi().fgRed().a("TESTS FAILED").reset())
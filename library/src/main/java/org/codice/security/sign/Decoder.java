@@ -6,21 +6,24 @@
 */
 package org.codice.security.sign;
 
+import static org.codice.compliance.CommonKt.MAX_INFLATED_SIZE;
+
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 import org.apache.cxf.helpers.IOUtils;
 import org.codice.security.sign.Decoder.DecoderException.InflErrorCode;
 
 public class Decoder {
 
-  private static final boolean GZIP_COMPATIBLE = true;
+  private static final long DEFAULT_MAX_INFLATED_BYTES = 10L * 1024 * 1024;
+
+  private static final long MAX_INFLATED_BYTES =
+      Long.getLong(MAX_INFLATED_SIZE, DEFAULT_MAX_INFLATED_BYTES);
 
   private Decoder() {}
 
@@ -31,13 +34,21 @@ private Decoder() {}
    * @return - decoded message
    */
   public static String decodePostMessage(String message) throws DecoderException {
-    try {
-      return new String(
-          Base64.getDecoder().decode(message.getBytes(StandardCharsets.UTF_8)),
-          StandardCharsets.UTF_8.name());
-    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
-      throw new DecoderException(DecoderException.InflErrorCode.ERROR_BASE64_DECODING);
-    }
+    return readFully(postMessageStream(message));
+  }
+
+  /**
+   * Base 64 decodes POST SAML messages while they are read. Decoding errors are thrown from the
+   * returned stream as a {@link DecoderStreamException}.
+   *
+   * @param message - SAML POST message
+   * @return - stream of the decoded message
+   */
+  public static InputStream postMessageStream(String message) {
+    return new ErrorCodeInputStream(
+        Base64.getDecoder()
+            .wrap(new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8))),
+        InflErrorCode.ERROR_BASE64_DECODING);
   }
 
   /**
@@ -47,11 +58,25 @@ public static String decodePostMessage(String message) throws DecoderException {
    * @return - decoded message
    */
   public static String decodeAndInflateRedirectMessage(String message) throws DecoderException {
+    return readFully(redirectMessageStream(message));
+  }
+
+  /**
+   * URL decodes Redirect SAML messages, then base 64 decodes and inflates them while they are
+   * read. URL decoding errors are thrown right away, the others are thrown from the returned
+   * stream as a {@link DecoderStreamException}. Inflating more than the maximum inflated size,
+   * see {@value org.codice.compliance.CommonKt#MAX_INFLATED_SIZE}, is an error as well. The
+   * returned stream has to be closed to release its inflater.
+   *
+   * @param message - SAML Redirect message
+   * @return - stream of the decoded message
+   */
+  public static InputStream redirectMessageStream(String message) throws DecoderException {
     String urlDecoded;
 
     try {
-      urlDecoded = URLDecoder.decode(message, StandardCharsets.UTF_8.name());
-    } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+      urlDecoded = RedirectQueryString.decode(message);
+    } catch (IllegalArgumentException e) {
       throw new DecoderException(DecoderException.InflErrorCode.ERROR_URL_DECODING);
     }
 
@@ -59,32 +84,128 @@ public static String decodeAndInflateRedirectMessage(String message) throws Deco
       throw new DecoderException(DecoderException.InflErrorCode.LINEFEED_OR_WHITESPACE);
     }
 
-    byte[] base64Decoded = Base64.getDecoder().decode(urlDecoded.getBytes(StandardCharsets.UTF_8));
-    // this method is only here to try and catch a base64 decoding error
-    try {
-      new String(base64Decoded, StandardCharsets.UTF_8.name());
-    } catch (UnsupportedEncodingException e) {
-      throw new DecoderException(InflErrorCode.ERROR_BASE64_DECODING);
-    }
+    InputStream base64Decoded =
+        new ErrorCodeInputStream(
+            Base64.getDecoder()
+                .wrap(new ByteArrayInputStream(urlDecoded.getBytes(StandardCharsets.UTF_8))),
+            InflErrorCode.ERROR_BASE64_DECODING);
 
-    InputStream is =
-        new InflaterInputStream(
-            new ByteArrayInputStream(base64Decoded), new Inflater(GZIP_COMPATIBLE));
+    return new ErrorCodeInputStream(
+        new PooledInflaterInputStream(base64Decoded), InflErrorCode.ERROR_INFLATING);
+  }
 
-    try {
-      return IOUtils.toString(is, StandardCharsets.UTF_8.name());
+  private static String readFully(InputStream is) throws DecoderException {
+    try (InputStream decoded = is) {
+      return IOUtils.toString(decoded, StandardCharsets.UTF_8.name());
+    } catch (DecoderStreamException e) {
+      throw new DecoderException(e.getInflErrorCode());
     } catch (IOException e) {
       throw new DecoderException(DecoderException.InflErrorCode.ERROR_INFLATING);
     }
   }
 
+  /**
+   * Inflates with a pooled inflater that is given back when the stream is closed, and fails once
+   * more than the maximum inflated size was produced.
+   */
+  private static class PooledInflaterInputStream extends InflaterInputStream {
+
+    private long inflatedSize = 0;
+
+    private boolean closed = false;
+
+    PooledInflaterInputStream(InputStream in) {
+      super(in, ZlibPool.borrowInflater());
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        inflatedSize += read;
+        if (inflatedSize > MAX_INFLATED_BYTES) {
+          throw new DecoderStreamException(
+              InflErrorCode.INFLATED_SIZE_EXCEEDED,
+              new IOException(
+                  String.format(
+                      "The inflated message is larger than %d bytes.", MAX_INFLATED_BYTES)));
+        }
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        try {
+          super.close();
+        } finally {
+          ZlibPool.returnInflater(inf);
+        }
+      }
+    }
+  }
+
+  /** Reports any read failure of the wrapped stream with the given error code. */
+  private static class ErrorCodeInputStream extends FilterInputStream {
+
+    private final InflErrorCode inflErrorCode;
+
+    ErrorCodeInputStream(InputStream in, InflErrorCode inflErrorCode) {
+      super(in);
+      this.inflErrorCode = inflErrorCode;
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (IOException e) {
+        throw wrap(e);
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      try {
+        return super.read(b, off, len);
+      } catch (IOException e) {
+        throw wrap(e);
+      }
+    }
+
+    private DecoderStreamException wrap(IOException e) {
+      // Keep the code of the innermost failing stage
+      return e instanceof DecoderStreamException
+          ? (DecoderStreamException) e
+          : new DecoderStreamException(inflErrorCode, e);
+    }
+  }
+
+  /** Thrown while reading a decoding stream. */
+  public static class DecoderStreamException extends IOException {
+
+    private final InflErrorCode inflErrorCode;
+
+    public DecoderStreamException(InflErrorCode inflErrorCode, Throwable cause) {
+      super(inflErrorCode.name(), cause);
+      this.inflErrorCode = inflErrorCode;
+    }
+
+    public InflErrorCode getInflErrorCode() {
+      return inflErrorCode;
+    }
+  }
+
   public static class DecoderException extends Exception {
 
     public enum InflErrorCode {
       ERROR_BASE64_DECODING,
       ERROR_URL_DECODING,
       LINEFEED_OR_WHITESPACE,
-      ERROR_INFLATING
+      ERROR_INFLATING,
+      INFLATED_SIZE_EXCEEDED
     }
 
     final InflErrorCode inflErrorCode;
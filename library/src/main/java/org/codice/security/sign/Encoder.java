@@ -18,8 +18,6 @@
 
 public class Encoder {
 
-  private static final boolean GZIP_COMPATIBLE = true;
-
   private Encoder() {}
 
   /**
@@ -64,13 +62,15 @@ public static String encodePostMessage(String samlType, String message, String r
   @SuppressWarnings("squid:S4087" /* Close call needed */)
   public static String encodeRedirectMessage(String message) throws IOException {
     ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
-    try (OutputStream tokenStream =
-        new DeflaterOutputStream(valueBytes, new Deflater(Deflater.DEFLATED, GZIP_COMPATIBLE))) {
+    Deflater deflater = ZlibPool.borrowDeflater();
+    try (OutputStream tokenStream = new DeflaterOutputStream(valueBytes, deflater)) {
       tokenStream.write(message.getBytes(StandardCharsets.UTF_8));
       tokenStream.close();
 
       String encodedMessage = Base64.getEncoder().encodeToString(valueBytes.toByteArray());
       return URLEncoder.encode(encodedMessage, StandardCharsets.UTF_8.name());
+    } finally {
+      ZlibPool.returnDeflater(deflater);
     }
   }
 }
@@ -0,0 +1,221 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.security.sign;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.cxf.rs.security.saml.sso.SSOConstants;
+
+/**
+ * Byte oriented query string handling for the redirect binding. Builds the octet string covered by
+ * a redirect signature directly into a byte array and parses a Location header in a single pass,
+ * instead of going through intermediate Strings, {@code split} calls and {@code URLEncoder}.
+ *
+ * <p>Encoding and decoding follow {@code application/x-www-form-urlencoded}, the same format
+ * {@link java.net.URLEncoder} and {@link java.net.URLDecoder} use.
+ */
+public class RedirectQueryString {
+
+  private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] RELAY_STATE_PARAM =
+      ("&" + SSOConstants.RELAY_STATE + "=").getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[] SIG_ALG_PARAM =
+      ("&" + SSOConstants.SIG_ALG + "=").getBytes(StandardCharsets.US_ASCII);
+
+  private static final int HEX_RADIX = 16;
+
+  private RedirectQueryString() {}
+
+  /**
+   * Builds the octet string a redirect binding signature is computed over,
+   * {@code samlType=value[&RelayState=value]&SigAlg=value}. All values must already be URL encoded
+   * exactly as they appear in the query string.
+   *
+   * @param samlType - SAMLRequest or SAMLResponse
+   * @param encodedMessage - the encoded SAML message
+   * @param encodedRelayState - the encoded relay state or null if there is none
+   * @param encodedSigAlg - the encoded signature algorithm
+   * @return the octets to sign or verify
+   */
+  public static byte[] signedOctets(
+      String samlType, String encodedMessage, String encodedRelayState, String encodedSigAlg) {
+    if (!isAscii(encodedMessage) || !isAscii(encodedRelayState) || !isAscii(encodedSigAlg)) {
+      // Only a malformed query string has non ASCII characters, sign them the way they came in
+      StringBuilder query = new StringBuilder(samlType).append('=').append(encodedMessage);
+      if (encodedRelayState != null) {
+        query.append('&').append(SSOConstants.RELAY_STATE).append('=').append(encodedRelayState);
+      }
+      query.append('&').append(SSOConstants.SIG_ALG).append('=').append(encodedSigAlg);
+      return query.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    int length = samlType.length() + 1 + encodedMessage.length();
+    if (encodedRelayState != null) {
+      length += RELAY_STATE_PARAM.length + encodedRelayState.length();
+    }
+    length += SIG_ALG_PARAM.length + encodedSigAlg.length();
+
+    byte[] octets = new byte[length];
+    int position = putAscii(octets, 0, samlType);
+    octets[position++] = '=';
+    position = putAscii(octets, position, encodedMessage);
+    if (encodedRelayState != null) {
+      System.arraycopy(RELAY_STATE_PARAM, 0, octets, position, RELAY_STATE_PARAM.length);
+      position = putAscii(octets, position + RELAY_STATE_PARAM.length, encodedRelayState);
+    }
+    System.arraycopy(SIG_ALG_PARAM, 0, octets, position, SIG_ALG_PARAM.length);
+    putAscii(octets, position + SIG_ALG_PARAM.length, encodedSigAlg);
+    return octets;
+  }
+
+  /**
+   * Parses the query string of a url in one pass. Values are returned exactly as they appear in
+   * the url, i.e. still URL encoded, since the redirect signature covers the encoded form.
+   *
+   * @param url - the url, typically the Location header of a redirect
+   * @return the parameters in query string order or null if the url has no query string
+   */
+  public static Map<String, String> parse(String url) {
+    int start = url.indexOf('?');
+    if (start < 0 || start == url.length() - 1) {
+      return null;
+    }
+
+    Map<String, String> params = new LinkedHashMap<>();
+    int end = url.indexOf('#', start);
+    int length = end < 0 ? url.length() : end;
+    int keyStart = start + 1;
+    int equals = -1;
+    for (int i = keyStart; i <= length; i++) {
+      if (i == length || url.charAt(i) == '&') {
+        if (i > keyStart) {
+          if (equals < 0) {
+            params.put(url.substring(keyStart, i), "");
+          } else {
+            params.put(url.substring(keyStart, equals), url.substring(equals + 1, i));
+          }
+        }
+        keyStart = i + 1;
+        equals = -1;
+      } else if (equals < 0 && url.charAt(i) == '=') {
+        equals = i;
+      }
+    }
+    return params;
+  }
+
+  /**
+   * URL encodes the value. Values that don't need encoding are returned as is.
+   *
+   * @param value - the value to encode
+   * @return the encoded value
+   */
+  public static String encode(String value) {
+    int i = 0;
+    while (i < value.length() && isUnreserved(value.charAt(i))) {
+      i++;
+    }
+    if (i == value.length()) {
+      return value;
+    }
+
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    byte[] encoded = new byte[bytes.length * 3];
+    int position = 0;
+    for (byte b : bytes) {
+      if (b >= 0 && isUnreserved((char) b)) {
+        encoded[position++] = b;
+      } else if (b == ' ') {
+        encoded[position++] = '+';
+      } else {
+        encoded[position++] = '%';
+        encoded[position++] = HEX[(b >> 4) & 0x0F];
+        encoded[position++] = HEX[b & 0x0F];
+      }
+    }
+    return new String(encoded, 0, position, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * URL decodes the value as UTF-8. Values without any escapes are returned as is.
+   *
+   * @param value - the value to decode
+   * @return the decoded value
+   * @throws IllegalArgumentException if the value contains an illegal escape sequence
+   */
+  public static String decode(String value) {
+    if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+      return value;
+    }
+
+    byte[] decoded = new byte[value.length() * 3];
+    int position = 0;
+    int i = 0;
+    while (i < value.length()) {
+      char c = value.charAt(i);
+      if (c == '+') {
+        decoded[position++] = ' ';
+        i++;
+      } else if (c == '%') {
+        if (i + 2 >= value.length()) {
+          throw new IllegalArgumentException("Incomplete trailing escape pattern in " + value);
+        }
+        int high = Character.digit(value.charAt(i + 1), HEX_RADIX);
+        int low = Character.digit(value.charAt(i + 2), HEX_RADIX);
+        if (high < 0 || low < 0) {
+          throw new IllegalArgumentException(
+              "Illegal hex characters in escape pattern in " + value);
+        }
+        decoded[position++] = (byte) ((high << 4) + low);
+        i += 3;
+      } else if (c < 0x80) {
+        decoded[position++] = (byte) c;
+        i++;
+      } else {
+        int next = i + Character.charCount(value.codePointAt(i));
+        byte[] bytes = value.substring(i, next).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, decoded, position, bytes.length);
+        position += bytes.length;
+        i = next;
+      }
+    }
+    return new String(decoded, 0, position, StandardCharsets.UTF_8);
+  }
+
+  private static boolean isUnreserved(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '.'
+        || c == '-'
+        || c == '*'
+        || c == '_';
+  }
+
+  private static boolean isAscii(String value) {
+    if (value == null) {
+      return true;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Copies a value that is known to be ASCII, such as an already URL encoded value. */
+  private static int putAscii(byte[] octets, int position, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      octets[position++] = (byte) value.charAt(i);
+    }
+    return position;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.security.sign;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Bounded pools of the {@link Inflater} and {@link Deflater} instances used by the redirect
+ * binding. Both hold native zlib memory that is otherwise only released on finalization, so every
+ * borrowed instance has to be given back. Returned instances are reset for reuse and the ones that
+ * don't fit in the pool are ended right away.
+ */
+class ZlibPool {
+
+  private static final boolean GZIP_COMPATIBLE = true;
+
+  private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+  private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+  private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+  private ZlibPool() {}
+
+  static Inflater borrowInflater() {
+    Inflater inflater = INFLATERS.poll();
+    return inflater != null ? inflater : new Inflater(GZIP_COMPATIBLE);
+  }
+
+  static void returnInflater(Inflater inflater) {
+    inflater.reset();
+    if (!INFLATERS.offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  static Deflater borrowDeflater() {
+    Deflater deflater = DEFLATERS.poll();
+    return deflater != null ? deflater : new Deflater(Deflater.DEFLATED, GZIP_COMPATIBLE);
+  }
+
+  static void returnDeflater(Deflater deflater) {
+    deflater.reset();
+    if (!DEFLATERS.offer(deflater)) {
+      deflater.end();
+    }
+  }
+}
@@ -14,11 +14,16 @@
 import org.codice.security.saml.SamlProtocol
 import org.w3c.dom.Node
 import org.w3c.tidy.Tidy
+import java.io.BufferedInputStream
 import java.io.File
+import java.io.InputStream
 import java.io.StringWriter
 import java.nio.charset.StandardCharsets
 import java.util.Properties
+import javax.xml.XMLConstants
+import javax.xml.parsers.DocumentBuilder
 import javax.xml.parsers.DocumentBuilderFactory
+import javax.xml.parsers.ParserConfigurationException
 import javax.xml.transform.OutputKeys
 import javax.xml.transform.Transformer
 import javax.xml.transform.TransformerFactory
@@ -32,9 +37,40 @@
 const val LENIENT_ERROR_VERIFICATION = "lenient.error.verification"
 const val RUN_DDF_PROFILE = "run.ddf.profile"
 const val QUIET_MODE = "quiet.mode"
+const val SIGNATURE_CACHE_SIZE = "signature.cache.size"
+const val MAX_INFLATED_SIZE = "max.inflated.size"
+const val PARALLEL_VERIFICATION = "parallel.verification"
+const val ID_REGISTRY_SIZE = "id.registry.size"
 
 class Common {
     companion object {
+        /**
+         * Looked up and configured once. External entities and DTDs are never loaded, and nodes
+         * are built eagerly so parsed documents can be read from several threads.
+         */
+        private val DOCUMENT_BUILDER_FACTORY: DocumentBuilderFactory by lazy {
+            DocumentBuilderFactory.newInstance().apply {
+                isNamespaceAware = true
+                isXIncludeAware = false
+                setFeatureIfSupported(this, XMLConstants.FEATURE_SECURE_PROCESSING, true)
+                setFeatureIfSupported(this,
+                        "http://xml.org/sax/features/external-general-entities", false)
+                setFeatureIfSupported(this,
+                        "http://xml.org/sax/features/external-parameter-entities", false)
+                setFeatureIfSupported(this,
+                        "http://apache.org/xml/features/nonvalidating/load-external-dtd", false)
+                setFeatureIfSupported(this,
+                        "http://apache.org/xml/features/dom/defer-node-expansion", false)
+            }
+        }
+
+        // DocumentBuilders aren't thread safe, so each thread reuses its own
+        private val DOCUMENT_BUILDER = ThreadLocal.withInitial {
+            synchronized(DOCUMENT_BUILDER_FACTORY) {
+                DOCUMENT_BUILDER_FACTORY.newDocumentBuilder()
+            }
+        }
+
         private val SUPPORTED_BINDINGS = mutableSetOf(
                 SamlProtocol.Binding.HTTP_POST,
                 SamlProtocol.Binding.HTTP_REDIRECT
@@ -100,15 +136,56 @@ fun getSingleLogoutLocation(binding: String): String? {
          * Generates an xml document from an input string
          */
         fun buildDom(inputXml: String): Node {
-            return DocumentBuilderFactory.newInstance().apply {
-                isNamespaceAware = true
-            }.newDocumentBuilder()
+            return newDocumentBuilder()
                     .parse(tidy(inputXml).byteInputStream())
                     .documentElement
         }
 
+        /**
+         * Generates an xml document straight from an input stream, such as a decoding stream,
+         * without reading it into a String first. The stream is only read into a String and
+         * tidied when its start looks like HTML. The stream is closed once parsed.
+         */
+        fun buildDom(inputXml: InputStream): Node {
+            BufferedInputStream(inputXml, HtmlSniffer.SNIFF_LENGTH).use { input ->
+                input.mark(HtmlSniffer.SNIFF_LENGTH)
+                val prefix = ByteArray(HtmlSniffer.SNIFF_LENGTH)
+                var length = 0
+                while (length < prefix.size) {
+                    val read = input.read(prefix, length, prefix.size - length)
+                    if (read < 0) break
+                    length += read
+                }
+                input.reset()
+
+                if (HtmlSniffer.isHtml(String(prefix, 0, length, StandardCharsets.UTF_8))) {
+                    return buildDom(input.reader(StandardCharsets.UTF_8).readText())
+                }
+                return newDocumentBuilder().parse(input).documentElement
+            }
+        }
+
+        /**
+         * Returns this thread's document builder, reset to its initial configuration.
+         */
+        private fun newDocumentBuilder(): DocumentBuilder {
+            return DOCUMENT_BUILDER.get().apply { reset() }
+        }
+
+        private fun setFeatureIfSupported(
+            factory: DocumentBuilderFactory,
+            feature: String,
+            value: Boolean
+        ) {
+            try {
+                factory.setFeature(feature, value)
+            } catch (e: ParserConfigurationException) {
+                Log.debugWithSupplier { "The XML parser doesn't support $feature." }
+            }
+        }
+
         private fun tidy(input: String): String {
-            if (!"""(?i:.*<html.*)""".toRegex(RegexOption.DOT_MATCHES_ALL).matches(input)) {
+            if (!HtmlSniffer.isHtml(input)) {
                 return input
             }
             input.byteInputStream().use { inStr ->
@@ -135,12 +212,14 @@ fun runningDDFProfile() = (System.getProperty(RUN_DDF_PROFILE) == "true")
     }
 }
 
+private val UNESCAPED_AMPERSAND = """&([^;]+(?!(?:\\\\w|;)))""".toRegex()
+
 @Suppress("TooGenericExceptionCaught")
 fun String.prettyPrintXml(): String {
     return try {
         // Escape all ampersands because Keycloak does not properly escape it in POST responses
         // which causes the transform to fail.
-        val escapedString = this.replace("""&([^;]+(?!(?:\\\\w|;)))""".toRegex(),
+        val escapedString = this.replace(UNESCAPED_AMPERSAND,
                 { match -> "&amp;${match.value.removePrefix("&")}" })
 
         Common.buildDom(escapedString).prettyPrintXml()
@@ -157,8 +236,26 @@ fun runningDDFProfile() = (System.getProperty(RUN_DDF_PROFILE) == "true")
     }
 }
 
-internal fun createTransformer(): Transformer {
-    return TransformerFactory.newInstance().newTransformer().apply {
+/**
+ * Logs the pretty printed node when debugging. The node is only printed if debug logging is on.
+ */
+fun Node.debugPrettyPrintXml(header: String?) {
+    Log.debugWithSupplier {
+        val headerVal = if (header != null) "$header:\n\n" else ""
+        "$headerVal ${this.prettyPrintXml()}"
+    }
+}
+
+private val TRANSFORMER_FACTORY by lazy { TransformerFactory.newInstance() }
+
+/*
+ * The pretty printing transform is an identity transform, so there is no stylesheet to compile.
+ * Its output properties never change, which lets every thread reuse its own transformer.
+ */
+private val PRETTY_PRINT_TRANSFORMER = ThreadLocal.withInitial {
+    synchronized(TRANSFORMER_FACTORY) {
+        TRANSFORMER_FACTORY.newTransformer()
+    }.apply {
         setOutputProperty(OutputKeys.ENCODING, StandardCharsets.UTF_8.name())
         setOutputProperty(OutputKeys.INDENT, "yes")
         setOutputProperty(OutputKeys.METHOD, "html")
@@ -166,3 +263,6 @@ internal fun createTransformer(): Transformer {
         setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2")
     }
 }
+
+/** @return the pretty printing transformer of the current thread */
+internal fun prettyPrintTransformer(): Transformer = PRETTY_PRINT_TRANSFORMER.get()
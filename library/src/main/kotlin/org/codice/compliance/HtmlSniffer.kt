@@ -0,0 +1,64 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance
+
+/**
+ * Tells HTML apart from XML by looking at the start of the content only, so large SAML messages
+ * aren't scanned as a whole.
+ */
+internal object HtmlSniffer {
+
+    /** The most characters looked at. */
+    const val SNIFF_LENGTH = 1024
+
+    private const val BYTE_ORDER_MARK = '\uFEFF'
+
+    /**
+     * Whether the content is HTML, i.e. its first element is {@code html} or it declares an html
+     * DOCTYPE. Whitespace, the XML declaration, processing instructions and comments before it are
+     * skipped. Content whose first markup isn't found within [SNIFF_LENGTH] characters isn't HTML.
+     */
+    fun isHtml(input: String): Boolean {
+        val start = firstMarkupIndex(input)
+        return start >= 0 &&
+                (matchesName(input, start + 1, "html") ||
+                        matchesName(input, start + 2, "DOCTYPE html"))
+    }
+
+    private fun firstMarkupIndex(input: String): Int {
+        val end = minOf(input.length, SNIFF_LENGTH)
+        var index = 0
+        var next = skipPrologItem(input, index, end)
+        while (next > index) {
+            index = next
+            next = skipPrologItem(input, index, end)
+        }
+        return if (index < end && input[index] == '<') index else -1
+    }
+
+    /** @return the index after the prolog item at {@param index} or {@param index} if none */
+    private fun skipPrologItem(input: String, index: Int, end: Int): Int {
+        return when {
+            index >= end -> index
+            input[index].isWhitespace() || input[index] == BYTE_ORDER_MARK -> index + 1
+            input.startsWith("<?", index) -> indexAfter(input, "?>", index, end)
+            input.startsWith("<!--", index) -> indexAfter(input, "-->", index, end)
+            else -> index
+        }
+    }
+
+    private fun indexAfter(input: String, terminator: String, index: Int, end: Int): Int {
+        val found = input.indexOf(terminator, index)
+        return if (found < 0 || found >= end) end else found + terminator.length
+    }
+
+    private fun matchesName(input: String, index: Int, name: String): Boolean {
+        val next = input.getOrNull(index + name.length)
+        return input.regionMatches(index, name, 0, name.length, ignoreCase = true) &&
+                (next == null || next.isWhitespace() || next == '>' || next == '/')
+    }
+}
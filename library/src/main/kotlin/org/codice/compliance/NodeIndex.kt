@@ -0,0 +1,173 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance
+
+import org.w3c.dom.Document
+import org.w3c.dom.Node
+import java.util.IdentityHashMap
+
+private const val VERSION_KEY = "org.codice.compliance.documentVersion"
+private const val INDEX_KEY = "org.codice.compliance.nodeIndex"
+
+/**
+ * The number of times the document owning this {@code Node} was marked as modified.
+ */
+fun Node.documentVersion(): Long {
+    return owningDocument()?.let { synchronized(it) { it.getUserData(VERSION_KEY) } } as Long? ?: 0L
+}
+
+/**
+ * Marks the document owning this {@code Node} as modified, which discards its [NodeIndex]. Must
+ * be called whenever nodes are added, removed or replaced in a document that may be indexed.
+ */
+fun Node.markDocumentModified() {
+    owningDocument()?.let {
+        synchronized(it) { it.setUserData(VERSION_KEY, it.documentVersion() + 1, null) }
+    }
+}
+
+/**
+ * Prepares the document owning this {@code Node} to be read by several threads at once. Its
+ * [NodeIndex] is built, which also creates the parts of the DOM that are only created when they
+ * are first read, so reading the document doesn't modify it anymore. The document must not be
+ * modified while it's read concurrently.
+ */
+fun Node.prepareForConcurrentReads() {
+    NodeIndex.of(this)
+}
+
+private fun Node.owningDocument(): Document? {
+    val thisNode = if (this is DecoratedNode) getNode() else this
+    return thisNode as? Document ?: thisNode.ownerDocument
+}
+
+/**
+ * An index over all of the nodes of a document, built with a single walk. It maps element local
+ * names and attribute names to the nodes carrying them, so looking up the descendants of any node
+ * doesn't need to walk the tree again.
+ *
+ * Nodes are kept in the order [recursiveChildren] visits them, so lookups return the exact same
+ * lists as a walk. An index is only valid for the [documentVersion] it was built for. Once built,
+ * it can be read by several threads at once.
+ */
+class NodeIndex private constructor(private val document: Document) {
+
+    private val version = document.documentVersion()
+    private val nodes = mutableListOf<Node>()
+    private val subtreeEnds = mutableListOf<Int>()
+    private val positions = IdentityHashMap<Node, Int>()
+    private val byLocalName = mutableMapOf<String, Postings>()
+    private val byAttribute = mutableMapOf<String, Postings>()
+
+    init {
+        addChildren(document)
+    }
+
+    companion object {
+        /**
+         * Returns the index of the document owning {@param node}, building it if the document
+         * wasn't indexed yet or was modified since.
+         */
+        fun of(node: Node): NodeIndex? {
+            val document = node.owningDocument() ?: return null
+            return synchronized(document) {
+                existing(document) ?: NodeIndex(document).also {
+                    document.setUserData(INDEX_KEY, it, null)
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the document owning {@param node} if it was built and is still
+         * current, or null.
+         */
+        fun existing(node: Node): NodeIndex? {
+            val document = node.owningDocument() ?: return null
+            val index = synchronized(document) { document.getUserData(INDEX_KEY) } as NodeIndex?
+            return index?.takeIf { it.version == it.document.documentVersion() }
+        }
+    }
+
+    /**
+     * Finds all of the descendants of {@param node}, like [recursiveChildren].
+     *
+     * @param name - Optional element name to match.
+     * @return the descendants, or null if {@param node} isn't part of the indexed document
+     */
+    fun descendants(node: Node, name: String? = null): List<Node>? {
+        val range = subtreeRange(node) ?: return null
+        return if (name == null) {
+            nodes.subList(range.first, range.last + 1)
+        } else {
+            byLocalName[name]?.within(range) ?: emptyList()
+        }
+    }
+
+    /**
+     * Finds all of the descendants of {@param node} that have the attribute {@param name}.
+     *
+     * @return the descendants, or null if {@param node} isn't part of the indexed document
+     */
+    fun descendantsWithAttribute(node: Node, name: String): List<Node>? {
+        val range = subtreeRange(node) ?: return null
+        return byAttribute[name]?.within(range) ?: emptyList()
+    }
+
+    private fun subtreeRange(node: Node): IntRange? {
+        val thisNode = if (node is DecoratedNode) node.getNode() else node
+        if (thisNode === document) return 0 until nodes.size
+
+        val position = positions[thisNode] ?: return null
+        return position + 1 until subtreeEnds[position]
+    }
+
+    private fun addChildren(parent: Node) {
+        // Same order as children(), i.e. last child first
+        var child = parent.lastChild
+        while (child != null) {
+            add(child)
+            child = child.previousSibling
+        }
+    }
+
+    private fun add(node: Node) {
+        val position = nodes.size
+        nodes.add(node)
+        subtreeEnds.add(position)
+        positions[node] = position
+
+        node.localName?.let { byLocalName.getOrPut(it) { Postings() }.add(position, node) }
+        node.attributes?.let {
+            for (i in 0 until it.length) {
+                byAttribute.getOrPut(it.item(i).nodeName) { Postings() }.add(position, node)
+            }
+        }
+
+        addChildren(node)
+        subtreeEnds[position] = nodes.size
+    }
+
+    /** Nodes and their positions in the document, in ascending order. */
+    private class Postings {
+        private val positions = mutableListOf<Int>()
+        private val nodes = mutableListOf<Node>()
+
+        fun add(position: Int, node: Node) {
+            positions.add(position)
+            nodes.add(node)
+        }
+
+        fun within(range: IntRange): List<Node> {
+            return nodes.subList(lowerBound(range.first), lowerBound(range.last + 1))
+        }
+
+        private fun lowerBound(position: Int): Int {
+            val found = positions.binarySearch(position)
+            return if (found >= 0) found else -(found + 1)
+        }
+    }
+}
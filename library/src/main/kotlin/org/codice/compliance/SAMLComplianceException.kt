@@ -10,50 +10,39 @@
 import de.jupf.staticlog.core.LogLevel
 import org.w3c.dom.Node
 
-@Suppress("StringLiteralDuplication", "SpreadOperator")
-class SAMLComplianceException : Exception {
-
-    val section: Section
-
-    val errorCodes: List<SAMLSpecRefMessage>
-
-    private constructor(sec: Section, codes: Array<out SAMLSpecRefMessage>, message: String) :
-            super(message) {
-        errorCodes = listOf(*codes)
-        section = sec
-    }
-
-    private constructor(sec: Section, codes: Collection<SAMLSpecRefMessage>, message: String) :
-            super(message) {
-        errorCodes = codes.toList()
-        section = sec
-    }
-
-    private constructor(
-        sec: Section,
-        codes: Array<out SAMLSpecRefMessage>,
-        message: String,
-        cause: Throwable
-    ) : super(message, cause) {
-        errorCodes = listOf(*codes)
-        section = sec
-    }
-
-    private constructor(
-        sec: Section,
-        codes: Collection<SAMLSpecRefMessage>,
-        message: String,
-        cause: Throwable
-    ) : super(message, cause) {
-        errorCodes = codes.toList()
-        section = sec
-    }
+/**
+ * An error found while verifying an implementation.
+ *
+ * The exception keeps the values it was created with and only renders its message the first time
+ * it is read, since many exceptions are de-duplicated by the {@code Report} or never printed. The
+ * incorrect node is rendered when the exception is created instead, so later changes to the DOM
+ * don't show up in the message and the exception doesn't keep the DOM alive.
+ */
+@Suppress("StringLiteralDuplication", "SpreadOperator", "LongParameterList")
+class SAMLComplianceException private constructor(
+    val section: Section,
+    val errorCodes: List<SAMLSpecRefMessage>,
+    /** The message given to [create], null for property exceptions */
+    val description: String?,
+    /** The property containing the incorrect value, null for exceptions created by [create] */
+    val property: String?,
+    val actual: String?,
+    val expected: String?,
+    /** The XML of the incorrect node that caused the exception, only rendered when debugging */
+    private val nodeXml: String?,
+    private val suffix: String,
+    cause: Throwable?
+) : Exception(null, cause) {
+
+    override val message: String by lazy { renderMessage() }
 
     companion object {
         private const val IDP_ERROR_RESPONSE_REMINDER_MESSAGE = "Make sure the IdP responds " +
                 "immediately with a SAML error response (See section 3.2.1 in the SAML Core " +
                 "specification)"
 
+        private val REF_QUALIFIER = """([a-zA-Z]*(_[\d*])*)([_][a-z])?""".toRegex()
+
         /**
          * Creates a new SAMLComplianceException.
          *
@@ -72,18 +61,8 @@ fun create(
             cause: Throwable? = null,
             node: Node? = null
         ): SAMLComplianceException {
-            val samlExceptions = codes.map(Companion::readCode)
-                    .fold("\tSAML Specification References:\n") { acc, s ->
-                        "$acc\n\t$s"
-                    }
-
-            return if (cause != null) {
-                SAMLComplianceException(codes[0].section, codes, "$message\n\n$samlExceptions\n\n" +
-                        "${node?.debugPrettyPrintXml() ?: ""}\n", cause)
-            } else {
-                SAMLComplianceException(codes[0].section, codes, "$message\n\n$samlExceptions\n\n" +
-                        "${node?.debugPrettyPrintXml() ?: ""}\n")
-            }
+            return SAMLComplianceException(codes[0].section, listOf(*codes), message, null, null,
+                    null, node?.debugPrettyPrintXml(), "", cause)
         }
 
         /**
@@ -108,18 +87,7 @@ fun createWithPropertyMessage(
             expected: String? = null,
             node: Node? = null
         ): SAMLComplianceException {
-            val samlExceptions = codes.map(Companion::readCode)
-                    .fold("\tSAML Specification References:\n") { acc, s ->
-                        "$acc\n\t$s"
-                    }
-            return if (expected == null) {
-                SAMLComplianceException(codes[0].section, codes, "The $property value of $actual " +
-                        "is invalid.\n\n$samlExceptions\n\n" + (node?.debugPrettyPrintXml() ?: ""))
-            } else {
-                SAMLComplianceException(codes[0].section, codes, "The $property value of $actual " +
-                        "is not equal to $expected.\n\n$samlExceptions\n\n" +
-                        (node?.debugPrettyPrintXml() ?: ""))
-            }
+            return createWithPropertyMessage(listOf(*codes), property, actual, expected, node)
         }
 
         /**
@@ -144,19 +112,8 @@ fun createWithPropertyMessage(
             expected: String? = null,
             node: Node? = null
         ): SAMLComplianceException {
-            val samlExceptions = codes.map(Companion::readCode)
-                    .fold("\tSAML Specification References:\n") { acc, s ->
-                        "$acc\n\t$s"
-                    }
-            return if (expected == null) {
-                SAMLComplianceException(codes.first().section, codes, "The $property value of " +
-                        "$actual is invalid.\n\n$samlExceptions\n\n" +
-                        (node?.debugPrettyPrintXml() ?: ""))
-            } else {
-                SAMLComplianceException(codes.first().section, codes, "The $property value of " +
-                        "$actual is not equal to $expected.\n\n$samlExceptions\n\n" +
-                        (node?.debugPrettyPrintXml() ?: ""))
-            }
+            return SAMLComplianceException(codes.first().section, codes.toList(), null, property,
+                    actual, expected, node?.debugPrettyPrintXml(), "", null)
         }
 
         /**
@@ -167,13 +124,9 @@ fun createWithPropertyMessage(
          */
         fun recreateExceptionWithErrorMessage(exception: SAMLComplianceException):
                 SAMLComplianceException {
-            return if (exception.cause != null) {
-                SAMLComplianceException(exception.section, exception.errorCodes,
-                        "${exception.message}$IDP_ERROR_RESPONSE_REMINDER_MESSAGE",
-                        exception.cause)
-            } else {
-                SAMLComplianceException(exception.section, exception.errorCodes,
-                        "${exception.message}$IDP_ERROR_RESPONSE_REMINDER_MESSAGE")
+            return with(exception) {
+                SAMLComplianceException(section, errorCodes, description, property, actual,
+                        expected, nodeXml, "$suffix$IDP_ERROR_RESPONSE_REMINDER_MESSAGE", cause)
             }
         }
 
@@ -182,14 +135,29 @@ private fun readCode(code: SAMLSpecRefMessage): String {
         }
 
         private fun trimRefQualifier(codeValue: String): String? {
-            return """([a-zA-Z]*(_[\d*])*)([_][a-z])?"""
-                    .toRegex()
-                    .find(codeValue)
+            return REF_QUALIFIER.find(codeValue)
                     ?.groupValues
                     ?.get(1)
         }
     }
 
+    private fun renderMessage(): String {
+        val samlExceptions = errorCodes.map { readCode(it) }
+                .fold("\tSAML Specification References:\n") { acc, s ->
+                    "$acc\n\t$s"
+                }
+        val xml = nodeXml.orEmpty()
+
+        val rendered = when {
+            property == null -> "$description\n\n$samlExceptions\n\n$xml\n"
+            expected == null ->
+                "The $property value of $actual is invalid.\n\n$samlExceptions\n\n$xml"
+            else -> "The $property value of $actual is not equal to $expected.\n\n" +
+                    "$samlExceptions\n\n$xml"
+        }
+        return "$rendered$suffix"
+    }
+
     /** The error codes of SAMLComplianceExceptions will determine their equality */
     override fun equals(other: Any?): Boolean {
         if (other !is SAMLComplianceException) return false
@@ -72,8 +72,10 @@ fun isDDFProfile(): Boolean {
      * This allows the Report to know when a section is skipped.
      */
     fun start() {
-        if (Report.getExceptionMessages(this).isBlank()) {
-            Report.setExceptionMessages(this, mutableSetOf())
+        Report.update {
+            if (Report.getExceptionMessages(this).isBlank()) {
+                Report.setExceptionMessages(this, mutableSetOf())
+            }
         }
     }
 
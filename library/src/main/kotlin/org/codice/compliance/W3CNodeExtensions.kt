@@ -4,15 +4,14 @@
 Released under the GNU Lesser General Public License; see
 http://www.gnu.org/licenses/lgpl.html
 */
+@file:Suppress("TooManyFunctions")
+
 package org.codice.compliance
 
 import org.w3c.dom.Node
-import org.w3c.dom.NodeList
 import java.io.StringWriter
 import javax.xml.transform.dom.DOMSource
 import javax.xml.transform.stream.StreamResult
-import javax.xml.xpath.XPathConstants
-import javax.xml.xpath.XPathFactory
 
 /**
  * Finds all of the first level children of a {@code Node}.
@@ -21,33 +20,82 @@
  * @return List of child {@code Nodes}.
  */
 fun Node.children(name: String? = null): List<Node> {
-    val predicate: (Node) -> Boolean =
-            if (name == null) {
-                { true }
-            } else {
-                { it.localName == name }
-            }
-
-    return ((this.childNodes.length - 1) downTo 0)
-            .map { this.childNodes.item(it) }
-            .filter(predicate)
-            .toList()
+    return childSequence(name).toList()
+}
+
+/**
+ * Lazily iterates the first level children of a {@code Node}, in the same order as [children].
+ *
+ * @param name - Optional element name to match.
+ * @return Sequence of child {@code Nodes}.
+ */
+fun Node.childSequence(name: String? = null): Sequence<Node> {
+    return generateSequence(unwrap().lastChild) { it.previousSibling }.matching(name)
 }
 
 /**
  * Finds all of the children of a {@code Node}, regardless of how deep an element is nested in its
  * children.
  *
+ * Looking up the children of a {@link DecoratedNode} indexes its document, see [NodeIndex]. Any
+ * later lookup in that document is answered from the index until it is modified.
+ *
  * @param name - Optional element name to match.
  * @return List of child {@code Nodes}.
  */
 fun Node.recursiveChildren(name: String? = null): List<Node> {
-    val nodes = mutableListOf<Node>()
-    this.children().forEach {
-        if (name == null || name == it.localName) nodes.add(it)
-        nodes.addAll(it.recursiveChildren(name))
+    val index = if (this is DecoratedNode) NodeIndex.of(this) else NodeIndex.existing(this)
+    index?.descendants(this, name)?.let { return it }
+
+    return walk().matching(name).toList()
+}
+
+/**
+ * Lazily iterates all of the children of a {@code Node}, regardless of how deep an element is
+ * nested, in the same order as [recursiveChildren]. Nothing past the children that are consumed
+ * is visited, so checks like {@code any} or {@code firstOrNull} stop as soon as they can.
+ *
+ * @param name - Optional element name to match.
+ * @return Sequence of child {@code Nodes}.
+ */
+fun Node.recursiveChildSequence(name: String? = null): Sequence<Node> {
+    return NodeIndex.existing(this)?.descendants(this, name)?.asSequence()
+            ?: walk().matching(name)
+}
+
+/**
+ * Finds all of the children of a {@code Node} that have the given attribute, regardless of how
+ * deep they are nested. Uses the document's [NodeIndex] like [recursiveChildren].
+ *
+ * @param name - Attribute name to match.
+ * @return List of child {@code Nodes}.
+ */
+fun Node.recursiveChildrenWithAttribute(name: String): List<Node> {
+    val index = if (this is DecoratedNode) NodeIndex.of(this) else NodeIndex.existing(this)
+    return index?.descendantsWithAttribute(this, name)
+            ?: walk().filter { it.attributeNode(name) != null }.toList()
+}
+
+/** Pre-order walk over the descendants, visiting the children of each node last one first. */
+private fun Node.walk(): Sequence<Node> {
+    val root = unwrap()
+    return generateSequence(root.lastChild) { it.nextInWalk(root) }
+}
+
+private fun Node.nextInWalk(root: Node): Node? {
+    if (lastChild != null) return lastChild
+
+    var node: Node? = this
+    while (node != null && node !== root && node.previousSibling == null) {
+        node = node.parentNode
     }
-    return nodes
+    return if (node == null || node === root) null else node.previousSibling
+}
+
+private fun Node.unwrap() = if (this is DecoratedNode) getNode() else this
+
+private fun Sequence<Node>.matching(name: String?): Sequence<Node> {
+    return if (name == null) this else filter { it.localName == name }
 }
 
 /**
@@ -57,63 +105,70 @@
  * @return List of sibling {code Nodes}.
  */
 fun Node.siblings(name: String? = null): List<Node> {
-    val siblingNodes = mutableListOf<Node>()
-
-    // backwards portion
-    var tempNode = this
-    while (tempNode.previousSibling != null) {
-        tempNode = tempNode.previousSibling
-        if (name == null || tempNode.localName == name)
-            siblingNodes.add(tempNode)
-    }
-
-    // forwards portion
-    tempNode = this
-    while (tempNode.nextSibling != null) {
-        tempNode = tempNode.nextSibling
-        if (name == null || tempNode.localName == name)
-            siblingNodes.add(tempNode)
-    }
+    return siblingSequence(name).toList()
+}
 
-    return siblingNodes
+/**
+ * Lazily iterates the siblings of a {@code Node}, in the same order as [siblings].
+ *
+ * @param name - Optional element name to match.
+ * @return Sequence of sibling {code Nodes}.
+ */
+fun Node.siblingSequence(name: String? = null): Sequence<Node> {
+    val thisNode = unwrap()
+    return (generateSequence(thisNode.previousSibling) { it.previousSibling } +
+            generateSequence(thisNode.nextSibling) { it.nextSibling }).matching(name)
 }
 
 /**
  * Returns all of the attributes of a {@code Node} as a {@code List} of {@code Nodes}.
  */
 fun Node.attributeList(): List<Node> {
-    val attributesList = mutableListOf<Node>()
-    this.attributes?.let {
-        for (i in it.length - 1 downTo 0) {
-            attributesList.add(it.item(i))
-        }
-    }
-    return attributesList
+    return attributeSequence().toList()
 }
 
+/**
+ * Lazily iterates the attributes of a {@code Node}, in the same order as [attributeList].
+ */
+fun Node.attributeSequence(): Sequence<Node> {
+    val attributes = this.attributes ?: return emptySequence()
+    return (attributes.length - 1 downTo 0).asSequence().map { attributes.item(it) }
+}
+
+/**
+ * Pretty prints a {@code Node}. A copy of the node is printed with whitespace-only text removed, so
+ * the node itself isn't modified.
+ */
 fun Node.prettyPrintXml(): String {
-    // Remove whitespaces outside tags
-    normalize()
-    val thisNode = if (this is DecoratedNode)
-        this.getNode()
-    else
-        this
-
-    val xPath = XPathFactory.newInstance().newXPath()
-    val nodeList = xPath.evaluate("//text()[normalize-space()='']",
-            thisNode,
-            XPathConstants.NODESET) as NodeList
-    for (i in 0 until nodeList.length) {
-        val node = nodeList.item(i)
-        node.parentNode.removeChild(node)
+    val copy = unwrap().cloneNode(true).apply {
+        normalize()
+        removeWhitespaceText()
     }
 
-    val transformer = createTransformer()
     val output = StringWriter()
-    transformer.transform(DOMSource(thisNode), StreamResult(output))
+    prettyPrintTransformer().transform(DOMSource(copy), StreamResult(output))
     return output.toString()
 }
 
+/** Removes the descendant text nodes that only contain XML whitespace. */
+private fun Node.removeWhitespaceText() {
+    var child = firstChild
+    while (child != null) {
+        val next = child.nextSibling
+        if (child.isWhitespaceText()) {
+            removeChild(child)
+        } else {
+            child.removeWhitespaceText()
+        }
+        child = next
+    }
+}
+
+private fun Node.isWhitespaceText(): Boolean {
+    return (nodeType == Node.TEXT_NODE || nodeType == Node.CDATA_SECTION_NODE) &&
+            nodeValue.all { it == ' ' || it == '\t' || it == '\n' || it == '\r' }
+}
+
 /**
  * Returns the named attribute node, or null if not present.
  */
@@ -45,6 +45,58 @@
 
     private var hasExceptions = false
 
+    private val recordings = ThreadLocal<Recording?>()
+
+    /** The recording whose updates are being applied on the current thread */
+    private val replays = ThreadLocal<Recording?>()
+
+    /**
+     * Report updates recorded on one thread, in the order they were made. A recording must only
+     * be replayed once the thread that recorded it is done with it.
+     */
+    class Recording {
+        private val updates = mutableListOf<() -> Unit>()
+
+        /**
+         * The exceptions added to the report by the recorded updates, including the ones added by
+         * updates that only add them when they're applied
+         */
+        val exceptions = mutableListOf<SAMLComplianceException>()
+
+        internal fun add(update: () -> Unit) {
+            updates.add(update)
+        }
+
+        /**
+         * Runs {@param block} with every report update it makes on the current thread added to
+         * this recording instead of being applied.
+         */
+        fun <T> record(block: () -> T): T {
+            val previous = Report.recordings.get()
+            Report.recordings.set(this)
+            try {
+                return block()
+            } finally {
+                Report.recordings.set(previous)
+            }
+        }
+
+        /**
+         * Applies the recorded updates to the report on the current thread, or adds them to the
+         * thread's own recording
+         */
+        fun replay() {
+            val previous = Report.replays.get()
+            Report.replays.set(this)
+            try {
+                updates.forEach { Report.update(it) }
+            } finally {
+                Report.replays.set(previous)
+            }
+            Report.recordings.get()?.exceptions?.addAll(exceptions)
+        }
+    }
+
     /**
      * Adds an exception to the {@code exceptionMessages} for the given {@param section}
      *
@@ -55,14 +107,17 @@ fun addExceptionMessage(
         exception: SAMLComplianceException,
         section: Section = exception.section
     ): Report {
-        if (exceptionMessages[section] == null) {
-            exceptionMessages[section] = mutableSetOf(exception)
-        } else {
-            exceptionMessages[section]?.add(exception)
-        }
+        (recordings.get() ?: replays.get())?.exceptions?.add(exception)
+        update {
+            if (exceptionMessages[section] == null) {
+                exceptionMessages[section] = mutableSetOf(exception)
+            } else {
+                exceptionMessages[section]?.add(exception)
+            }
 
-        currentTestExceptionMessages.add(exception)
-        hasExceptions = true
+            currentTestExceptionMessages.add(exception)
+            hasExceptions = true
+        }
         return this
     }
 
@@ -73,7 +128,7 @@ fun addExceptionMessage(
      * @return - A joint string containing all the exception for the given section
      */
     fun getExceptionMessages(section: Section): String {
-        return exceptionMessages[section]?.joinToString() ?: ""
+        return synchronized(this) { exceptionMessages[section]?.joinToString() ?: "" }
     }
 
     /**
@@ -82,28 +137,42 @@ fun getExceptionMessages(section: Section): String {
      * @param section - the section of the exceptions
      */
     internal fun setExceptionMessages(section: Section, set: MutableSet<SAMLComplianceException>?) {
-        exceptionMessages[section] = set
+        update { exceptionMessages[section] = set }
+    }
+
+    /**
+     * Runs {@param update}, which changes the report or other state shared by verifiers. While
+     * the current thread is recording (see [Recording.record]), it's only added to the recording,
+     * so the updates of verifiers running concurrently are applied in a deterministic order.
+     */
+    fun update(update: () -> Unit) {
+        val recording = recordings.get()
+        if (recording != null) {
+            recording.add(update)
+        } else {
+            synchronized(this) { update() }
+        }
     }
 
     /**
      * @return true if there are exceptions and false otherwise
      */
     fun hasExceptions(): Boolean {
-        return hasExceptions
+        return synchronized(this) { hasExceptions }
     }
 
     /**
      * @return true if the current test has exceptions and false otherwise
      */
     fun testHasExceptions(): Boolean {
-        return currentTestExceptionMessages.isNotEmpty()
+        return synchronized(this) { currentTestExceptionMessages.isNotEmpty() }
     }
 
     /**
      * Resets the list of the current test's exceptions
      */
     fun resetCurrentTestExceptions() {
-        currentTestExceptionMessages = mutableSetOf()
+        synchronized(this) { currentTestExceptionMessages = mutableSetOf() }
     }
 
     /**
@@ -111,9 +180,11 @@ fun resetCurrentTestExceptions() {
      * This is used for testing purposes only
      */
     fun resetExceptionMap() {
-        exceptionMessages.clear()
-        exceptionMessages.putAll(emptyExceptionMap)
-        hasExceptions = false
+        synchronized(this) {
+            exceptionMessages.clear()
+            exceptionMessages.putAll(emptyExceptionMap)
+            hasExceptions = false
+        }
     }
 
     /**
@@ -123,7 +194,7 @@ fun printTestExceptions() {
         if (reportQuietly) {
             return
         }
-        currentTestExceptionMessages.forEach {
+        synchronized(this) { currentTestExceptionMessages.toList() }.forEach {
             println(Ansi.ansi().fgMagenta().a(it.message).reset())
         }
     }
@@ -0,0 +1,68 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.security.sign;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import org.apache.cxf.helpers.IOUtils;
+import org.apache.cxf.rs.security.saml.sso.SSOConstants;
+import org.codice.security.sign.Decoder.DecoderException.InflErrorCode;
+import org.junit.jupiter.api.Test;
+
+public class DecoderTest {
+
+  private static final String MESSAGE =
+      "<samlp:Response xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\">é</samlp:Response>";
+
+  @Test
+  public void testRedirectMessageRoundTrip() throws Exception {
+    String encoded = Encoder.encodeRedirectMessage(MESSAGE);
+
+    assertThat(Decoder.decodeAndInflateRedirectMessage(encoded), is(MESSAGE));
+    try (InputStream stream = Decoder.redirectMessageStream(encoded)) {
+      assertThat(IOUtils.toString(stream, StandardCharsets.UTF_8.name()), is(MESSAGE));
+    }
+  }
+
+  @Test
+  public void testPostMessageRoundTrip() throws Exception {
+    String encoded =
+        URLDecoder.decode(
+            Encoder.encodePostMessage(SSOConstants.SAML_RESPONSE, MESSAGE).split("=", 2)[1],
+            StandardCharsets.UTF_8.name());
+
+    assertThat(Decoder.decodePostMessage(encoded), is(MESSAGE));
+  }
+
+  @Test
+  public void testStreamReportsBase64Errors() throws Exception {
+    InputStream stream = Decoder.postMessageStream("not base64!");
+
+    Decoder.DecoderStreamException e =
+        assertThrows(
+            Decoder.DecoderStreamException.class, () -> IOUtils.readBytesFromStream(stream));
+    assertThat(e.getInflErrorCode(), is(InflErrorCode.ERROR_BASE64_DECODING));
+  }
+
+  @Test
+  public void testRedirectErrorCodes() {
+    assertThat(redirectErrorCode("%zz"), is(InflErrorCode.ERROR_URL_DECODING));
+    assertThat(redirectErrorCode("A!AA"), is(InflErrorCode.ERROR_BASE64_DECODING));
+    assertThat(redirectErrorCode("AAAA"), is(InflErrorCode.ERROR_INFLATING));
+  }
+
+  private InflErrorCode redirectErrorCode(String message) {
+    return assertThrows(
+            Decoder.DecoderException.class, () -> Decoder.decodeAndInflateRedirectMessage(message))
+        .getInflErrorCode();
+  }
+}
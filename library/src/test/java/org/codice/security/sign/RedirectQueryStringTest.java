@@ -0,0 +1,100 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.security.sign;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class RedirectQueryStringTest {
+
+  private static final String SIG_ALG = "http://www.w3.org/2000/09/xmldsig#dsa-sha1";
+
+  private static final String RELAY_STATE = "relay state/ü&=";
+
+  @Test
+  public void testSignedOctetsMatchConcatenatedQueryString() throws Exception {
+    String encodedSigAlg = URLEncoder.encode(SIG_ALG, StandardCharsets.UTF_8.name());
+    String encodedRelayState = URLEncoder.encode(RELAY_STATE, StandardCharsets.UTF_8.name());
+
+    byte[] octets =
+        RedirectQueryString.signedOctets("SAMLRequest", "abc%2B", encodedRelayState, encodedSigAlg);
+
+    assertThat(
+        new String(octets, StandardCharsets.UTF_8),
+        is(
+            "SAMLRequest=abc%2B&RelayState="
+                + encodedRelayState
+                + "&SigAlg="
+                + encodedSigAlg));
+  }
+
+  @Test
+  public void testSignedOctetsWithoutRelayState() {
+    byte[] octets = RedirectQueryString.signedOctets("SAMLResponse", "abc", null, "alg");
+
+    assertThat(new String(octets, StandardCharsets.UTF_8), is("SAMLResponse=abc&SigAlg=alg"));
+  }
+
+  @Test
+  public void testEncodeMatchesUrlEncoder() throws Exception {
+    for (String value : new String[] {SIG_ALG, RELAY_STATE, "a+b/c=", "plain_value-1.*"}) {
+      assertThat(
+          RedirectQueryString.encode(value),
+          is(URLEncoder.encode(value, StandardCharsets.UTF_8.name())));
+    }
+  }
+
+  @Test
+  public void testDecodeMatchesUrlDecoder() throws Exception {
+    for (String value : new String[] {SIG_ALG, RELAY_STATE, "a+b/c="}) {
+      String encoded = URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+      assertThat(
+          RedirectQueryString.decode(encoded),
+          is(URLDecoder.decode(encoded, StandardCharsets.UTF_8.name())));
+    }
+  }
+
+  @Test
+  public void testValuesWithoutEscapesAreNotCopied() {
+    String value = "plainValue";
+
+    assertThat(RedirectQueryString.encode(value), is(sameInstance(value)));
+    assertThat(RedirectQueryString.decode(value), is(sameInstance(value)));
+  }
+
+  @Test
+  public void testDecodeRejectsIllegalEscapes() {
+    assertThrows(IllegalArgumentException.class, () -> RedirectQueryString.decode("abc%2"));
+    assertThrows(IllegalArgumentException.class, () -> RedirectQueryString.decode("abc%zz"));
+  }
+
+  @Test
+  public void testParse() {
+    Map<String, String> params =
+        RedirectQueryString.parse("https://host/acs?SAMLResponse=a%3D%3D&RelayState=&SigAlg");
+
+    assertThat(params.size(), is(3));
+    assertThat(params.get("SAMLResponse"), is("a%3D%3D"));
+    assertThat(params.get("RelayState"), is(""));
+    assertThat(params.get("SigAlg"), is(""));
+  }
+
+  @Test
+  public void testParseWithoutQueryString() {
+    assertThat(RedirectQueryString.parse("https://host/acs"), is(nullValue()));
+    assertThat(RedirectQueryString.parse("https://host/acs?"), is(nullValue()));
+  }
+}
@@ -0,0 +1,72 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance
+
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+@Suppress("MagicNumber")
+class CommonSpec : StringSpec() {
+    init {
+        val response = """
+            |<s:Response xmlns:s="urn:oasis:names:tc:SAML:2.0:protocol" ID="id">
+            |  <s:Status/>
+            |</s:Response>
+            """.trimMargin()
+
+        "documents built from strings and streams are namespace aware" {
+            Common.buildDom(response).namespaceURI shouldBe "urn:oasis:names:tc:SAML:2.0:protocol"
+            Common.buildDom(response.byteInputStream()).localName shouldBe "Response"
+        }
+
+        "the document builder is reused safely across threads" {
+            val executor = Executors.newFixedThreadPool(4)
+            try {
+                val tasks = (1..20).map { i ->
+                    Callable { Common.buildDom(response.replace("\"id\"", "\"id$i\"")) }
+                }
+                executor.invokeAll(tasks).forEachIndexed { i, result ->
+                    result.get().attributeText("ID") shouldBe "id${i + 1}"
+                }
+            } finally {
+                executor.shutdown()
+            }
+        }
+
+        "only content starting with an html element or DOCTYPE is sniffed as html" {
+            HtmlSniffer.isHtml("<html><body/></html>") shouldBe true
+            HtmlSniffer.isHtml("<?xml version=\"1.0\"?>\n<!-- c -->\n<!DOCTYPE html>") shouldBe true
+            HtmlSniffer.isHtml(response) shouldBe false
+            HtmlSniffer.isHtml("<s:Response><html/></s:Response>") shouldBe false
+            HtmlSniffer.isHtml("<htmlx/>") shouldBe false
+        }
+
+        "pretty printing strips whitespace from a copy of the node" {
+            val dom = Common.buildDom(response)
+            val childCount = dom.childNodes.length
+
+            dom.prettyPrintXml().lines().filter { it.isNotBlank() }.size shouldBe 3
+            dom.childNodes.length shouldBe childCount
+            dom.documentVersion() shouldBe 0L
+        }
+
+        "external entities are not resolved" {
+            val secret = File.createTempFile("secret", ".txt").apply {
+                writeText("secret")
+                deleteOnExit()
+            }
+            val xml = """<?xml version="1.0"?>
+                |<!DOCTYPE r [<!ENTITY e SYSTEM "${secret.toURI()}">]>
+                |<r>&e;</r>""".trimMargin()
+
+            Common.buildDom(xml).textContent shouldBe ""
+        }
+    }
+}
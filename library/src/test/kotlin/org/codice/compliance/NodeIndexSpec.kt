@@ -0,0 +1,78 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance
+
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+import org.w3c.dom.Node
+
+class NodeIndexSpec : StringSpec() {
+    private class Decorated(private val node: Node) : DecoratedNode, Node by node {
+        override fun getNode() = node
+    }
+
+    init {
+        val xml = """
+            |<s:Response xmlns:s="urn:oasis:names:tc:SAML:2.0:protocol"
+            |            xmlns:a="urn:oasis:names:tc:SAML:2.0:assertion">
+            |  <a:Assertion ID="a1">
+            |    <a:Subject><a:NameID Format="f1">n1</a:NameID></a:Subject>
+            |    <a:Attribute Name="x"/>
+            |  </a:Assertion>
+            |  <a:Assertion ID="a2"><a:NameID Format="f2">n2</a:NameID></a:Assertion>
+            |</s:Response>
+            """.trimMargin()
+
+        "indexed lookups return the same nodes in the same order as a walk" {
+            val expected = Common.buildDom(xml)
+            val response = Decorated(Common.buildDom(xml))
+
+            response.recursiveChildren().map { it.nodeName } shouldBe
+                    expected.recursiveChildren().map { it.nodeName }
+            response.recursiveChildren("NameID").map { it.textContent } shouldBe listOf("n2", "n1")
+            NodeIndex.existing(response) shouldBe NodeIndex.of(response)
+
+            val assertion = response.recursiveChildren("Assertion").last()
+            assertion.recursiveChildren("NameID").map { it.textContent } shouldBe listOf("n1")
+            assertion.recursiveChildrenWithAttribute("Format").map { it.textContent } shouldBe
+                    listOf("n1")
+            response.recursiveChildrenWithAttribute("ID").map { it.attributeText("ID") } shouldBe
+                    listOf("a2", "a1")
+            response.recursiveChildren("Missing") shouldBe emptyList<Node>()
+        }
+
+        "the index is discarded when the document is modified" {
+            val response = Decorated(Common.buildDom(xml))
+            val assertion = response.recursiveChildren("Assertion").first()
+
+            response.getNode().removeChild(assertion)
+            response.markDocumentModified()
+
+            NodeIndex.existing(response) shouldBe null
+            response.recursiveChildren("NameID").map { it.textContent } shouldBe listOf("n1")
+        }
+
+        "sequences visit the same nodes in the same order as the lists" {
+            val response = Common.buildDom(xml)
+
+            (listOf(response) + response.recursiveChildren()).forEach {
+                it.recursiveChildSequence().toList() shouldBe it.recursiveChildren()
+                it.recursiveChildSequence("NameID").toList() shouldBe it.recursiveChildren("NameID")
+                it.childSequence().toList() shouldBe it.children()
+                it.siblingSequence().toList() shouldBe it.siblings()
+                it.attributeSequence().toList() shouldBe it.attributeList()
+            }
+        }
+
+        "documents that weren't looked up through a decorated node aren't indexed" {
+            val response = Common.buildDom(xml)
+
+            response.recursiveChildren("NameID").size shouldBe 2
+            NodeIndex.existing(response) shouldBe null
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+Copyright (c) 2018 Codice Foundation
+
+Released under the GNU Lesser General Public License; see
+http://www.gnu.org/licenses/lgpl.html
+*/
+package org.codice.compliance
+
+import de.jupf.staticlog.Log
+import de.jupf.staticlog.core.LogLevel
+import io.kotlintest.matchers.string.shouldContain
+import io.kotlintest.matchers.string.shouldNotContain
+import io.kotlintest.matchers.string.shouldStartWith
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.StringSpec
+
+class SAMLComplianceExceptionSpec : StringSpec() {
+    init {
+        "messages are rendered from the exception's values" {
+            val exception = SAMLComplianceException.createWithPropertyMessage(SAMLCore_1_3_1_a,
+                    property = "ID",
+                    actual = "a",
+                    expected = "b")
+
+            exception.property shouldBe "ID"
+            exception.message shouldStartWith "The ID value of a is not equal to b."
+            exception.message shouldContain "SAMLCore_1_3_1: ${SAMLCore_1_3_1_a.message}"
+        }
+
+        "recreated exceptions keep their codes, cause and message" {
+            val cause = IllegalStateException()
+            val exception = SAMLComplianceException.create(SAMLCore_3_2_2_d,
+                    message = "Invalid response.",
+                    cause = cause)
+            val recreated = SAMLComplianceException.recreateExceptionWithErrorMessage(exception)
+
+            recreated shouldBe exception
+            recreated.cause shouldBe cause
+            recreated.message shouldStartWith exception.message
+            recreated.message shouldContain "section 3.2.1"
+        }
+
+        "the node is rendered as it was when the exception was created" {
+            val node = Common.buildDom("<a><b>before</b></a>")
+            val logLevel = Log.logLevel
+            Log.logLevel = LogLevel.DEBUG
+            val exception = try {
+                SAMLComplianceException.create(SAMLCore_1_3_1_a, message = "Invalid.", node = node)
+            } finally {
+                Log.logLevel = logLevel
+            }
+            node.firstChild.textContent = "after"
+
+            exception.message shouldContain "before"
+            exception.message shouldNotContain "after"
+        }
+    }
+}
@@ -12,6 +12,7 @@
 import io.kotlintest.matchers.string.shouldBeBlank
 import io.kotlintest.matchers.string.shouldContain
 import io.kotlintest.matchers.string.shouldNotContain
+import io.kotlintest.shouldBe
 import io.kotlintest.specs.StringSpec
 import org.codice.compliance.SAMLBindings_3_1_2_1_a
 import org.codice.compliance.SAMLComplianceException
@@ -80,6 +81,49 @@ class ReportSpec : StringSpec() {
             Report.testHasExceptions().shouldBeFalse()
         }
 
+        "recorded updates are only applied when they're replayed" {
+            Report.resetExceptionMap()
+            val recording = Report.Recording()
+            recording.record {
+                BINDINGS_3_1.start()
+                Report.addExceptionMessage(
+                        SAMLComplianceException.create(SAMLBindings_3_1_2_1_a, message = "message"))
+            }
+            Report.getExceptionMessages(BINDINGS_3_1).shouldBeBlank()
+            Report.hasExceptions().shouldBeFalse()
+
+            recording.replay()
+            Report.getExceptionMessages(BINDINGS_3_1).shouldContain("message")
+            Report.hasExceptions().shouldBeTrue()
+        }
+
+        "a recording keeps the exceptions of the recordings replayed into it" {
+            Report.resetExceptionMap()
+            val exception = SAMLComplianceException.create(SAMLGeneral_a, message = "inner")
+            val inner = Report.Recording()
+            val outer = Report.Recording()
+            outer.record {
+                inner.record { Report.addExceptionMessage(exception) }
+                inner.replay()
+            }
+
+            inner.exceptions shouldBe listOf(exception)
+            outer.exceptions shouldBe listOf(exception)
+            Report.hasExceptions().shouldBeFalse()
+        }
+
+        "a recording keeps the exceptions added when its updates are applied" {
+            Report.resetExceptionMap()
+            val exception = SAMLComplianceException.create(SAMLGeneral_a, message = "deferred")
+            val recording = Report.Recording()
+            recording.record { Report.update { Report.addExceptionMessage(exception) } }
+            recording.exceptions shouldBe emptyList<SAMLComplianceException>()
+
+            recording.replay()
+            recording.exceptions shouldBe listOf(exception)
+            Report.hasExceptions().shouldBeTrue()
+        }
+
         "test report creation" {
             Report.addExceptionMessage(
                     SAMLComplianceException.create(SAMLGeneral_a, message = "message"))